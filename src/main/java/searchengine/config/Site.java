@@ -3,9 +3,22 @@ package searchengine.config;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Setter
 @Getter
 public class Site {
     private String url;
     private String name;
-}
\ No newline at end of file
+    private int priority = 0;
+    private int maxPages = 10000;
+    private int maxDepth = 20;
+    private long crawlDelay = 150;
+    private int crawlBurst = 1;
+    private boolean respectRobotsCrawlDelay = true;
+    private boolean incrementalRecrawl = false;
+    private boolean useSitemap = true;
+    private boolean detectNearDuplicates = true;
+    private List<String> stripParams = new ArrayList<>(List.of("utm_*", "gclid", "yclid", "fbclid", "_openstat"));
+}
@@ -13,5 +13,28 @@ import java.util.List;
 @ConfigurationProperties(prefix = "indexing-settings")
 public class SitesList {
     private String currentSite;
+    private int indexingThreads = 2;
+    private int crawlThreads = 10;
+    private int maxInFlightPerHost = 16;
+    private long connectTimeout = 10000;
+    private long fetchTimeout = 30000;
+    private int maxBodySize = 5 * 1024 * 1024;
+    private boolean truncateOversized = true;
+    private int pipelineQueueSize = 100;
+    private int extractThreads = 2;
+    private int lemmatizeThreads = Runtime.getRuntime().availableProcessors();
+    private int persistBatchSize = 50;
+    private String checkpointDir = "checkpoints";
+    private long checkpointInterval = 30000;
+    private String contentStoreDir = "content";
+    private int contentSegmentSize = 64 * 1024 * 1024;
+    private double compactionThreshold = 0.5;
+    private int lemmaCacheSize = 200000;
+    private int morphologyInstances = 2;
+    private boolean morphologyWarmUp = true;
+    private int idBlockSize = 10000;
+    private int bulkBatchSize = 1000;
+    private int dropBatchSize = 10000;
+    private String userAgent = "Mozilla/5.0 (Windows; U; WindowsNT 5.1; en-US; rv1.8.1.6) Gecko/20070725 Firefox/2.0.0.6";
     private List<Site> sites;
 }
@@ -60,6 +60,18 @@ public class ApiController {
         }
     }
 
+    @GetMapping("/relemmatize")
+    @Operation(summary = "Rebuild lemmas from stored page text")
+    public ResponseEntity<Object> relemmatize() {
+        if (indexingService.relemmatize()) {
+            return new ResponseEntity<>(new Response(true), HttpStatus.OK);
+        } else {
+            return new ResponseEntity<>(new BadRequest(false,
+                    "Пересчёт лемм невозможен: идёт индексация или пересчёт лемм"),
+                    HttpStatus.BAD_REQUEST);
+        }
+    }
+
     @GetMapping("/search")
     @Operation(summary = "Search")
     public ResponseEntity<Object> search(@RequestParam(name = "query", required = false, defaultValue = "")
@@ -71,7 +83,7 @@ public class ApiController {
         } else {
             List<StatisticsSearch> searchData;
             if (!site.isEmpty()) {
-                if (siteRepository.findByUrl(site) == null) {
+                if (siteRepository.findFirstByUrlAndLiveTrue(site) == null) {
                     return new ResponseEntity<>(new BadRequest(false, "Запрошенная страница не найдена"),
                             HttpStatus.BAD_REQUEST);
                 } else {
@@ -5,6 +5,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import searchengine.exception.ErrMessage;
+import searchengine.exception.IndexingException;
 
 @RestControllerAdvice
 public class ApiErrorController {
@@ -15,4 +16,10 @@ public class ApiErrorController {
                         + exception.getMessage()));
     }
 
+    @ExceptionHandler(IndexingException.class)
+    public ResponseEntity<ErrMessage> indexingException(IndexingException exception) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new ErrMessage(exception.getMessage()));
+    }
+
 }
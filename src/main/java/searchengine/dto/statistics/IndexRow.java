@@ -0,0 +1,14 @@
+package searchengine.dto.statistics;
+
+import lombok.Value;
+
+/**
+ * Строка index_table для пакетной вставки.
+ */
+@Value
+public class IndexRow {
+    long pageId;
+    long lemmaId;
+    float rank;
+    byte[] positions;
+}
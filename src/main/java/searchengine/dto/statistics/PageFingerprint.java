@@ -0,0 +1,9 @@
+package searchengine.dto.statistics;
+
+import lombok.Value;
+
+@Value
+public class PageFingerprint {
+    String path;
+    Long fingerprint;
+}
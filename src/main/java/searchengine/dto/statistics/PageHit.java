@@ -0,0 +1,12 @@
+package searchengine.dto.statistics;
+
+import lombok.Value;
+
+/**
+ * Страница, найденная в {@link searchengine.storage.InvertedIndex}, с суммой рангов лемм запроса.
+ */
+@Value
+public class PageHit {
+    long pageId;
+    float relevance;
+}
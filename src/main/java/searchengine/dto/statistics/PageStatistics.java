@@ -1,10 +1,23 @@
 package searchengine.dto.statistics;
 
+import lombok.AllArgsConstructor;
 import lombok.Value;
 
 @Value
+@AllArgsConstructor
 public class PageStatistics {
     String url;
     String content;
     int code;
+    String etag;
+    String lastModified;
+    String contentHash;
+    boolean unchanged;
+    String title;
+    String body;
+    long fingerprint;
+
+    public PageStatistics(String url, String content, int code) {
+        this(url, content, code, null, null, null, false, "", "", 0);
+    }
 }
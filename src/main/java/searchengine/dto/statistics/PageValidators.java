@@ -0,0 +1,11 @@
+package searchengine.dto.statistics;
+
+import lombok.Value;
+
+@Value
+public class PageValidators {
+    String path;
+    String etag;
+    String lastModified;
+    String contentHash;
+}
@@ -1,9 +0,0 @@
-package searchengine.dto.statistics;
-
-import lombok.Value;
-
-@Value
-public class StatisticsLemma {
-    String lemma;
-    int frequency;
-}
\ No newline at end of file
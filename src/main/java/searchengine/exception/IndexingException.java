@@ -0,0 +1,15 @@
+package searchengine.exception;
+
+/**
+ * Запрос на индексацию нельзя выполнить: сайт уже индексируется или страницу не удалось загрузить.
+ * Сообщение возвращается клиенту.
+ */
+public class IndexingException extends RuntimeException {
+    public IndexingException(String message) {
+        super(message);
+    }
+
+    public IndexingException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,24 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+
+/**
+ * Следующий свободный id таблицы, из которой id раздаются блоками ({@link searchengine.repositories.IdAllocator}).
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "id_block")
+@NoArgsConstructor
+public class IdBlock {
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    @Column(name = "next_id", nullable = false)
+    private long nextId;
+}
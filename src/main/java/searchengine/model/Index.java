@@ -19,8 +19,12 @@ import java.io.Serializable;
 @NoArgsConstructor
 public class Index implements Serializable {
 
+    /**
+     * Строки вставляются через {@link searchengine.repositories.BulkWriter} с id из
+     * {@link searchengine.repositories.IdAllocator}, а не из AUTO_INCREMENT. Генератора у id нет:
+     * сохранение новой строки через JPA без id отклоняется Hibernate.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     @ManyToOne(cascade = CascadeType.ALL)
@@ -34,4 +38,10 @@ public class Index implements Serializable {
     @Column(name = "my_rank")
     private Float rank;
 
+    /**
+     * Позиции леммы в тексте страницы, сжатые {@link searchengine.morphology.TermPositions#encode}.
+     */
+    @Column(name = "positions", columnDefinition = "MEDIUMBLOB")
+    private byte[] positions;
+
 }
@@ -0,0 +1,41 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Задание индексации сайта, принятое в очередь. Строка живёт, пока задание ждёт или выполняется,
+ * и переживает перезапуск приложения: после старта такие задания снова ставятся в очередь
+ * ({@link searchengine.services.IndexingScheduler}), а обход продолжается с контрольной точки.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "indexing_job")
+@NoArgsConstructor
+public class IndexingJob {
+    @Id
+    @Column(columnDefinition = "VARCHAR(255)")
+    private String url;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private JobType type;
+
+    @Column(nullable = false)
+    private int priority;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public IndexingJob(String url, JobType type, int priority) {
+        this.url = url;
+        this.type = type;
+        this.priority = priority;
+        this.createdAt = LocalDateTime.now();
+    }
+}
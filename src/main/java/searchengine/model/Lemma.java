@@ -14,11 +14,16 @@ import java.util.List;
 @Entity
 @Getter
 @Setter
-@Table(name = "lemma", indexes = {@javax.persistence.Index(name = "lemma_list", columnList = "lemma")})
+@Table(name = "lemma", indexes = {@javax.persistence.Index(name = "lemma_list", columnList = "lemma")},
+        uniqueConstraints = {@UniqueConstraint(name = "site_lemma", columnNames = {"site_id", "lemma"})})
 @NoArgsConstructor
 public class Lemma implements Serializable {
+    /**
+     * Строки вставляются через {@link searchengine.repositories.BulkWriter} с id из
+     * {@link searchengine.repositories.IdAllocator}, а не из AUTO_INCREMENT. Генератора у id нет:
+     * сохранение новой леммы через JPA без id из IdAllocator отклоняется в {@link #checkId()}.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private long id;
 
     @ManyToOne(cascade = CascadeType.ALL)
@@ -39,4 +44,11 @@ public class Lemma implements Serializable {
 
     @OneToMany(mappedBy = "lemma", cascade = CascadeType.ALL)
     private List<Index> indexList = new ArrayList<>();
+
+    @PrePersist
+    private void checkId() {
+        if (id == 0) {
+            throw new IllegalStateException("Lemma id must be taken from IdAllocator");
+        }
+    }
 }
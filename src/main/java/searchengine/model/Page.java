@@ -5,6 +5,8 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import searchengine.storage.ContentRef;
+
 import javax.persistence.*;
 import javax.persistence.Index;
 import java.io.Serializable;
@@ -17,12 +19,17 @@ import java.util.Objects;
 @Getter
 @Setter
 
-@Table(name = "page", indexes = {@Index(name = "path_list", columnList = "path")})
+@Table(name = "page", indexes = {@Index(name = "path_list", columnList = "path"),
+        @Index(name = "content_offset_list", columnList = "content_offset")})
 @NoArgsConstructor
 public class Page implements Serializable {
 
+    /**
+     * Id выдаются блоками по 50, поэтому Hibernate вставляет страницы пачками.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "page_ids")
+    @SequenceGenerator(name = "page_ids", sequenceName = "page_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(cascade = CascadeType.ALL)
@@ -35,8 +42,41 @@ public class Page implements Serializable {
     @Column(nullable = false)
     private int code;
 
-    @Column(length = 1677721500, columnDefinition = "MEDIUMTEXT", nullable = false)
-    private String content;
+    /**
+     * Ссылка на HTML-код страницы в {@link searchengine.storage.ContentStore}; null для страниц без содержимого.
+     */
+    @Column(name = "content_offset")
+    private Long contentOffset;
+
+    @Column(name = "content_length")
+    private Integer contentLength;
+
+    @Column(name = "title", columnDefinition = "TEXT")
+    private String title;
+
+    /**
+     * Ссылка на текст тела страницы, извлечённый при загрузке, в том же хранилище, что и HTML.
+     */
+    @Column(name = "text_offset")
+    private Long textOffset;
+
+    @Column(name = "text_length")
+    private Integer textLength;
+
+    @Column(name = "etag")
+    private String etag;
+
+    @Column(name = "last_modified")
+    private String lastModified;
+
+    @Column(name = "content_hash", columnDefinition = "CHAR(64)")
+    private String contentHash;
+
+    @Column(name = "fingerprint")
+    private Long fingerprint;
+
+    @Column(name = "alias_of")
+    private Long aliasOf;
 
     @OneToMany(mappedBy = "pageId", cascade = CascadeType.ALL)
     private List<searchengine.model.Index> indexList = new ArrayList<>();
@@ -47,12 +87,12 @@ public class Page implements Serializable {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Page dbPage = (Page) o;
-        return code == dbPage.code && Objects.equals(id, dbPage.id) && Objects.equals(siteId, dbPage.siteId) && Objects.equals(path, dbPage.path) && Objects.equals(content, dbPage.content) && Objects.equals(indexList, dbPage.indexList);
+        return code == dbPage.code && Objects.equals(id, dbPage.id) && Objects.equals(siteId, dbPage.siteId) && Objects.equals(path, dbPage.path) && Objects.equals(contentOffset, dbPage.contentOffset) && Objects.equals(indexList, dbPage.indexList);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, siteId, path, code, content, indexList);
+        return Objects.hash(id, siteId, path, code, contentOffset, indexList);
     }
 
     @Override
@@ -62,7 +102,7 @@ public class Page implements Serializable {
                 ", DBSite=" + siteId +
                 ", path='" + path + '\'' +
                 ", code=" + code +
-                ", content='" + content + '\'' +
+                ", contentOffset=" + contentOffset +
                 ", indexList=" + indexList +
                 '}';
     }
@@ -99,12 +139,104 @@ public class Page implements Serializable {
         this.code = code;
     }
 
-    public String getContent() {
-        return content;
+    public Long getContentOffset() {
+        return contentOffset;
+    }
+
+    public void setContentOffset(Long contentOffset) {
+        this.contentOffset = contentOffset;
+    }
+
+    public Integer getContentLength() {
+        return contentLength;
+    }
+
+    public void setContentLength(Integer contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public Long getTextOffset() {
+        return textOffset;
+    }
+
+    public void setTextOffset(Long textOffset) {
+        this.textOffset = textOffset;
+    }
+
+    public Integer getTextLength() {
+        return textLength;
+    }
+
+    public void setTextLength(Integer textLength) {
+        this.textLength = textLength;
+    }
+
+    /**
+     * Ставит ссылку на текст тела страницы, записанный в хранилище.
+     */
+    public void setTextRef(ContentRef ref) {
+        this.textOffset = ref == null ? null : ref.getOffset();
+        this.textLength = ref == null ? null : ref.getLength();
+    }
+
+    /**
+     * Ставит ссылку на содержимое, записанное в хранилище.
+     */
+    public void setContentRef(ContentRef ref) {
+        this.contentOffset = ref == null ? null : ref.getOffset();
+        this.contentLength = ref == null ? null : ref.getLength();
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public Long getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(Long fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Идентификатор канонической страницы, если эта страница — её почти точная копия.
+     * Копии хранятся без содержимого и не индексируются.
+     */
+    public Long getAliasOf() {
+        return aliasOf;
     }
 
-    public void setContent(String content) {
-        this.content = content;
+    public void setAliasOf(Long aliasOf) {
+        this.aliasOf = aliasOf;
     }
 
     public List<searchengine.model.Index> getIndexList() {
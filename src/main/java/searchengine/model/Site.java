@@ -31,6 +31,13 @@ public class Site {
     @Column(columnDefinition = "VARCHAR(255)", nullable = false)
     private String name;
 
+    /**
+     * Поколение, по которому идёт поиск. Полная переиндексация строит новое поколение сайта
+     * отдельной строкой с false и по готовности переключает флаг одним запросом.
+     */
+    @Column(nullable = false)
+    private boolean live = true;
+
     @OneToMany(mappedBy = "siteId", cascade = CascadeType.ALL)
     private List<Page> pages = new ArrayList<>();
 
@@ -85,6 +92,14 @@ public class Site {
         this.name = name;
     }
 
+    public boolean isLive() {
+        return live;
+    }
+
+    public void setLive(boolean live) {
+        this.live = live;
+    }
+
     public List<Page> getPages() {
         return pages;
     }
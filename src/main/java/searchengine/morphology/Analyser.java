@@ -1,95 +1,23 @@
 package searchengine.morphology;
 
-import lombok.extern.slf4j.Slf4j;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-import org.apache.logging.log4j.Marker;
-import org.apache.logging.log4j.MarkerManager;
-import org.apache.lucene.morphology.LuceneMorphology;
-import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 
-@Slf4j
+/**
+ * Лемматизатор русского и английского текста — единственная реализация {@link Morphology} в приложении.
+ * Безопасен для одновременного использования из многих потоков: общий кэш разбора потокобезопасен,
+ * а словари загружаются один раз и берутся из {@link MorphologyPool}.
+ */
 @Component
+@RequiredArgsConstructor
 public class Analyser implements Morphology {
-    private static RussianLuceneMorphology russianLuceneMorphology;
-    private final static String REGEX = "\\p{Punct}|[0-9]|№|©|◄|«|»|—|-|@|…";
-    private final static Marker INVALID_SYMBOL_MARKER = MarkerManager.getMarker("INVALID_SYMBOL");
-    private final static Logger LOGGER = LogManager.getLogger(LuceneMorphology.class);
-
-
-    static {
-        try {
-            russianLuceneMorphology = new RussianLuceneMorphology();
-        } catch (Exception e) {
-            LOGGER.error(e.getMessage());
-        }
-    }
-
-    @Override
-    public HashMap<String, Integer> getLemmaList(String content) {
-        content = content.toLowerCase(Locale.ROOT)
-                .replaceAll(REGEX, " ");
-        HashMap<String, Integer> lemmaList = new HashMap<>();
-        String[] elements = content.toLowerCase(Locale.ROOT).split("\\s+");
-        for (String el : elements) {
-            List<String> wordsList = getLemma(el);
-            for (String word : wordsList) {
-                int count = lemmaList.getOrDefault(word, 0);
-                lemmaList.put(word, count + 1);
-            }
-        }
-        return lemmaList;
-    }
+    private final LemmaCache lemmaCache;
+    private final MorphologyPool morphologyPool;
 
     @Override
     public List<String> getLemma(String word) {
-        List<String> lemmaList = new ArrayList<>();
-        try {
-            List<String> baseRusForm = russianLuceneMorphology.getNormalForms(word);
-            if (!isServiceWord(word)) {
-                lemmaList.addAll(baseRusForm);
-            }
-        } catch (Exception e) {
-            LOGGER.debug(INVALID_SYMBOL_MARKER, "Символ не найден - " + word);
-        }
-        return lemmaList;
-    }
-
-    @Override
-    public List<Integer> findLemmaIndexInText(String content, String lemma) {
-        List<Integer> lemmaIndexList = new ArrayList<>();
-        String[] elements = content.toLowerCase(Locale.ROOT).split("\\p{Punct}|\\s");
-        int index = 0;
-        for (String el : elements) {
-            List<String> lemmas = getLemma(el);
-            for (String lem : lemmas) {
-                if (lem.equals(lemma)) {
-                    lemmaIndexList.add(index);
-                }
-            }
-            index += el.length() + 1;
-        }
-        return lemmaIndexList;
-    }
-
-    private boolean isServiceWord(String word) {
-        List<String> morphForm = russianLuceneMorphology.getMorphInfo(word);
-        for (String l : morphForm) {
-            if (l.contains("ПРЕДЛ")
-                    || l.contains("СОЮЗ")
-                    || l.contains("МЕЖД")
-                    || l.contains("МС")
-                    || l.contains("ЧАСТ")
-                    || l.length() <= 3) {
-                return true;
-            }
-        }
-        return false;
+        return lemmaCache.get(word, morphologyPool::analyse).getLemmas();
     }
 }
@@ -0,0 +1,94 @@
+package searchengine.morphology;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Ограниченный кэш разбора слов «слово → нормальные формы и признак служебного слова» перед
+ * словарём морфологии. Словарь слов на страницах одного сайта сильно повторяется, поэтому
+ * большая часть обращений к словарю заменяется поиском в хэш-таблице. Кэш разбит на сегменты
+ * с собственной блокировкой и вытеснением давно не использованных слов; всего хранится не больше
+ * {@code lemma-cache-size} слов.
+ */
+@Component
+public class LemmaCache {
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public LemmaCache(SitesList sitesList) {
+        int segmentSize = Math.max(1, sitesList.getLemmaCacheSize() / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * @param word   слово в нижнем регистре
+     * @param lookup разбор слова словарём при промахе; выполняется вне блокировки сегмента
+     */
+    public WordForms get(String word, Function<String, WordForms> lookup) {
+        Segment segment = segments[(word.hashCode() & 0x7fffffff) % SEGMENTS];
+        WordForms forms;
+        synchronized (segment) {
+            forms = segment.get(word);
+        }
+        if (forms != null) {
+            hits.increment();
+            return forms;
+        }
+        misses.increment();
+        forms = lookup.apply(word);
+        synchronized (segment) {
+            segment.put(word, forms);
+        }
+        return forms;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return "Lemma cache: " + size() + " words, " + hits + "/" + total + " hits"
+                + (total == 0 ? "" : String.format(" (%.1f%%)", hits * 100.0 / total));
+    }
+
+    private static class Segment extends LinkedHashMap<String, WordForms> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, WordForms> eldest) {
+            return size() > capacity;
+        }
+    }
+}
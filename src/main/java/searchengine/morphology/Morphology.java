@@ -1,10 +1,57 @@
 package searchengine.morphology;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
 public interface Morphology {
-    HashMap<String, Integer> getLemmaList(String content);
+
+    /**
+     * Считает леммы текста: слова выделяются {@link Tokenizer}, а счётчик не создаёт объектов на каждое вхождение.
+     */
+    default TermCounter countLemmas(String content) {
+        return countLemmas(content, null, 0);
+    }
+
+    /**
+     * Считает леммы текста и заодно записывает позиции их вхождений.
+     *
+     * @param positions позиции лемм страницы или null, если они не нужны
+     * @param offset    смещение текста в тексте страницы ({@link TermPositions#pageText})
+     */
+    default TermCounter countLemmas(String content, TermPositions positions, int offset) {
+        TermCounter counter = new TermCounter();
+        Tokenizer.forEachWord(content, (word, start) -> {
+            int token = positions == null ? 0 : positions.nextToken();
+            for (String lemma : getLemma(word)) {
+                counter.increment(lemma);
+                if (positions != null) {
+                    positions.add(lemma, token, offset + start);
+                }
+            }
+        });
+        return counter;
+    }
+
+    /**
+     * То же, что {@link #countLemmas(String)}, в виде {@link HashMap}.
+     */
+    default HashMap<String, Integer> getLemmaList(String content) {
+        return countLemmas(content).toMap();
+    }
+
+    /**
+     * @return леммы слова в нижнем регистре; список только для чтения
+     */
     List<String> getLemma(String word);
-    List<Integer> findLemmaIndexInText(String content, String lemma);
-}
\ No newline at end of file
+
+    default List<Integer> findLemmaIndexInText(String content, String lemma) {
+        List<Integer> lemmaIndexList = new ArrayList<>();
+        Tokenizer.forEachWord(content, (word, start) -> {
+            if (getLemma(word).contains(lemma)) {
+                lemmaIndexList.add(start);
+            }
+        });
+        return lemmaIndexList;
+    }
+}
@@ -0,0 +1,177 @@
+package searchengine.morphology;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.morphology.LuceneMorphology;
+import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пулы экземпляров словарей морфологии. Библиотека не обещает потокобезопасности, поэтому каждый
+ * экземпляр в каждый момент используется только одним потоком: поток берёт экземпляр из пула на время
+ * разбора одного слова. Экземпляры создаются по мере надобности, но не больше {@code morphology-instances}
+ * на язык; остальные потоки ждут освобождения. Вместе с {@link LemmaCache} до словаря доходит малая доля
+ * слов, так что ожидание редкое.
+ * <p>
+ * Словарь выбирается по алфавиту слова ({@link Script}): кириллица разбирается русским словарём, латиница —
+ * английским, остальные слова отбрасываются без обращения к словарю, поэтому словарь не бросает исключений
+ * на неподходящих символах.
+ * <p>
+ * Загрузка словаря занимает секунды, поэтому при {@code morphology-warm-up} первые экземпляры
+ * загружаются в фоне сразу после старта, пока сервер уже принимает запросы.
+ */
+@Slf4j
+@Component
+public class MorphologyPool {
+    private static final List<String> RUSSIAN_SERVICE_TAGS = List.of("ПРЕДЛ", "СОЮЗ", "МЕЖД", "МС", "ЧАСТ");
+    private static final List<String> ENGLISH_SERVICE_TAGS = List.of(" CONJ", " PREP", " ARTICLE", " INT",
+            " PART", " PN");
+
+    private final Dictionary russian;
+    private final Dictionary english;
+    private final boolean warmUp;
+
+    public MorphologyPool(SitesList sitesList) {
+        int maxInstances = Math.max(1, sitesList.getMorphologyInstances());
+        this.russian = new Dictionary("Russian", RussianLuceneMorphology::new, RUSSIAN_SERVICE_TAGS, true,
+                maxInstances);
+        this.english = new Dictionary("English", EnglishLuceneMorphology::new, ENGLISH_SERVICE_TAGS, false,
+                maxInstances);
+        this.warmUp = sitesList.isMorphologyWarmUp();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!warmUp) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            long start = System.currentTimeMillis();
+            russian.warmUp();
+            english.warmUp();
+            log.info("Morphology dictionaries loaded in " + (System.currentTimeMillis() - start) + " ms");
+        }, "morphology-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Разбирает слово словарём его алфавита.
+     *
+     * @param word слово в нижнем регистре
+     * @return нормальные формы и признак служебного слова или {@link WordForms#UNKNOWN}, если слово
+     * не из одного алфавита или его нет в словаре
+     * @throws IllegalStateException если поток прерван в ожидании свободного экземпляра
+     */
+    public WordForms analyse(String word) {
+        return switch (Script.of(word)) {
+            case CYRILLIC -> russian.analyse(word);
+            case LATIN -> english.analyse(word);
+            case OTHER -> WordForms.UNKNOWN;
+        };
+    }
+
+    private static class Dictionary {
+        private final String language;
+        private final Callable<LuceneMorphology> factory;
+        private final List<String> serviceTags;
+        private final boolean shortInfoIsService;
+        private final int maxInstances;
+        private final BlockingQueue<LuceneMorphology> idle;
+        private final AtomicInteger created = new AtomicInteger();
+
+        /**
+         * @param shortInfoIsService считать служебными слова с короткой морфологической информацией
+         */
+        Dictionary(String language, Callable<LuceneMorphology> factory, List<String> serviceTags,
+                   boolean shortInfoIsService, int maxInstances) {
+            this.language = language;
+            this.factory = factory;
+            this.serviceTags = serviceTags;
+            this.shortInfoIsService = shortInfoIsService;
+            this.maxInstances = maxInstances;
+            this.idle = new ArrayBlockingQueue<>(maxInstances);
+        }
+
+        /**
+         * Загружает экземпляр словаря заранее, если ещё ни один не создан.
+         */
+        void warmUp() {
+            try {
+                if (created.getAndUpdate(n -> n == 0 ? 1 : n) == 0) {
+                    idle.add(create());
+                }
+            } catch (RuntimeException e) {
+                log.error("Morphology warm-up failed - " + language, e);
+            }
+        }
+
+        WordForms analyse(String word) {
+            LuceneMorphology morphology = borrow();
+            try {
+                if (!morphology.checkString(word)) {
+                    return WordForms.UNKNOWN;
+                }
+                List<String> normalForms = morphology.getNormalForms(word);
+                return new WordForms(List.copyOf(normalForms), isServiceWord(morphology.getMorphInfo(word)));
+            } finally {
+                idle.add(morphology);
+            }
+        }
+
+        private boolean isServiceWord(List<String> morphInfo) {
+            for (String l : morphInfo) {
+                if (shortInfoIsService && l.length() <= 3) {
+                    return true;
+                }
+                for (String tag : serviceTags) {
+                    if (l.contains(tag)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private LuceneMorphology borrow() {
+            LuceneMorphology morphology = idle.poll();
+            if (morphology != null) {
+                return morphology;
+            }
+            if (created.getAndUpdate(n -> n < maxInstances ? n + 1 : n) < maxInstances) {
+                return create();
+            }
+            try {
+                return idle.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a morphology instance", e);
+            }
+        }
+
+        private LuceneMorphology create() {
+            try {
+                LuceneMorphology morphology = factory.call();
+                log.info(language + " morphology instance created: " + created.get() + "/" + maxInstances);
+                return morphology;
+            } catch (IOException e) {
+                created.decrementAndGet();
+                throw new UncheckedIOException("Can't load the " + language + " morphology dictionary", e);
+            } catch (Exception e) {
+                created.decrementAndGet();
+                throw new IllegalStateException("Can't load the " + language + " morphology dictionary", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package searchengine.morphology;
+
+/**
+ * Алфавит слова, по которому выбирается словарь.
+ */
+public enum Script {
+    CYRILLIC,
+    LATIN,
+    /**
+     * Смешанные алфавиты, цифры и прочие символы: такое слово не разбирается.
+     */
+    OTHER;
+
+    /**
+     * Определяет алфавит за один проход по символам слова в нижнем регистре.
+     */
+    public static Script of(String word) {
+        if (word == null || word.isEmpty()) {
+            return OTHER;
+        }
+        Script script = null;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            Script current;
+            if ((c >= 'а' && c <= 'я') || c == 'ё') {
+                current = CYRILLIC;
+            } else if (c >= 'a' && c <= 'z') {
+                current = LATIN;
+            } else {
+                return OTHER;
+            }
+            if (script != null && script != current) {
+                return OTHER;
+            }
+            script = current;
+        }
+        return script;
+    }
+}
@@ -0,0 +1,136 @@
+package searchengine.morphology;
+
+import java.util.HashMap;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Счётчик «лемма → число вхождений» на открытой адресации с линейным пробированием.
+ * Значения хранятся в массиве int, поэтому подсчёт не создаёт объектов Integer и записей
+ * хэш-таблицы. Не потокобезопасен.
+ */
+public class TermCounter {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private String[] keys;
+    private int[] counts;
+    private int size;
+
+    public TermCounter() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public TermCounter(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(INITIAL_CAPACITY, expectedSize * 2) - 1) << 1;
+        keys = new String[capacity];
+        counts = new int[capacity];
+    }
+
+    public void increment(String term) {
+        add(term, 1);
+    }
+
+    public void add(String term, int count) {
+        int slot = slotOf(term, keys);
+        if (keys[slot] == null) {
+            keys[slot] = term;
+            if (++size * 2 > keys.length) {
+                grow();
+                slot = slotOf(term, keys);
+            }
+        }
+        counts[slot] += count;
+    }
+
+    /**
+     * @return число вхождений или 0, если лемма не встречалась
+     */
+    public int get(String term) {
+        int slot = slotOf(term, keys);
+        return keys[slot] == null ? 0 : counts[slot];
+    }
+
+    public boolean contains(String term) {
+        return keys[slotOf(term, keys)] != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(ObjIntConsumer<String> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                action.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    /**
+     * @return те же данные в виде {@link HashMap} для старого API
+     */
+    public HashMap<String, Integer> toMap() {
+        HashMap<String, Integer> map = new HashMap<>(size * 2);
+        forEach(map::put);
+        return map;
+    }
+
+    private void grow() {
+        String[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new String[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = slotOf(oldKeys[i], keys);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private static int slotOf(String term, String[] keys) {
+        int mask = keys.length - 1;
+        int hash = term.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (keys[slot] != null && !keys[slot].equals(term)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TermCounter other) || other.size != size) {
+            return false;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && other.get(keys[i]) != counts[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                hash += keys[i].hashCode() ^ counts[i];
+            }
+        }
+        return hash;
+    }
+}
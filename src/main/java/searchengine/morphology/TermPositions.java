@@ -0,0 +1,130 @@
+package searchengine.morphology;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Позиции лемм в тексте страницы: для каждого вхождения — порядковый номер слова в тексте
+ * и смещение его первого символа. Текст страницы — заголовок и тело через пробел ({@link #pageText}),
+ * нумерация слов сквозная. Позиции одной леммы хранятся в индексе в сжатом виде ({@link #encode}):
+ * разности соседних номеров и смещений в формате varint, обычно 2–3 байта на вхождение.
+ * Не потокобезопасен.
+ */
+public class TermPositions {
+    private static final int[] EMPTY = new int[0];
+
+    private final Map<String, Entries> entries = new HashMap<>();
+    private int tokens;
+
+    /**
+     * Текст страницы, к которому относятся смещения: заголовок и тело через пробел.
+     */
+    public static String pageText(String title, String body) {
+        return (title == null ? "" : title) + " " + (body == null ? "" : body);
+    }
+
+    /**
+     * @return смещение тела страницы в {@link #pageText}
+     */
+    public static int bodyOffset(String title) {
+        return (title == null ? 0 : title.length()) + 1;
+    }
+
+    /**
+     * @return порядковый номер очередного слова текста
+     */
+    public int nextToken() {
+        return tokens++;
+    }
+
+    public void add(String term, int token, int offset) {
+        entries.computeIfAbsent(term, t -> new Entries()).add(token, offset);
+    }
+
+    /**
+     * @return позиции леммы в сжатом виде или null, если лемма в тексте не встречалась
+     */
+    public byte[] encode(String term) {
+        Entries list = entries.get(term);
+        if (list == null) {
+            return null;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(list.size * 3);
+        int previousToken = 0;
+        int previousOffset = 0;
+        for (int i = 0; i < list.size; i++) {
+            writeVarInt(out, list.tokens[i] - previousToken);
+            writeVarInt(out, list.offsets[i] - previousOffset);
+            previousToken = list.tokens[i];
+            previousOffset = list.offsets[i];
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return номера слов из сжатых позиций по возрастанию
+     */
+    public static int[] decodeTokens(byte[] encoded) {
+        return decode(encoded, 0);
+    }
+
+    /**
+     * @return смещения слов из сжатых позиций по возрастанию
+     */
+    public static int[] decodeOffsets(byte[] encoded) {
+        return decode(encoded, 1);
+    }
+
+    private static int[] decode(byte[] encoded, int field) {
+        if (encoded == null || encoded.length == 0) {
+            return EMPTY;
+        }
+        int[] values = new int[encoded.length / 2];
+        int count = 0;
+        int[] previous = new int[2];
+        int position = 0;
+        int index = 0;
+        while (position < encoded.length) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = encoded[position++];
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous[index] += value;
+            if (index == field) {
+                values[count++] = previous[index];
+            }
+            index ^= 1;
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static class Entries {
+        private int[] tokens = new int[4];
+        private int[] offsets = new int[4];
+        private int size;
+
+        void add(int token, int offset) {
+            if (size == tokens.length) {
+                tokens = Arrays.copyOf(tokens, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            tokens[size] = token;
+            offsets[size] = offset;
+            size++;
+        }
+    }
+}
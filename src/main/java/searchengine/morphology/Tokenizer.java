@@ -0,0 +1,52 @@
+package searchengine.morphology;
+
+/**
+ * Разбивает текст на слова одним проходом по символам, без регулярных выражений и промежуточных
+ * массивов строк. Словом считается непрерывная последовательность букв; цифры, пунктуация,
+ * пробелы и прочие символы — разделители. Слова приводятся к нижнему регистру.
+ */
+public final class Tokenizer {
+
+    /**
+     * Получатель слов текста.
+     */
+    @FunctionalInterface
+    public interface WordConsumer {
+        /**
+         * @param word  слово в нижнем регистре
+         * @param start позиция первого символа слова в тексте
+         */
+        void accept(String word, int start);
+    }
+
+    private Tokenizer() {
+    }
+
+    public static void forEachWord(CharSequence text, WordConsumer consumer) {
+        if (text == null) {
+            return;
+        }
+        int length = text.length();
+        char[] buffer = new char[64];
+        int start = -1;
+        int size = 0;
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (Character.isLetter(c)) {
+                if (start < 0) {
+                    start = i;
+                    size = 0;
+                }
+                if (size == buffer.length) {
+                    char[] grown = new char[size * 2];
+                    System.arraycopy(buffer, 0, grown, 0, size);
+                    buffer = grown;
+                }
+                buffer[size++] = Character.toLowerCase(c);
+            } else if (start >= 0) {
+                consumer.accept(new String(buffer, 0, size), start);
+                start = -1;
+            }
+        }
+    }
+}
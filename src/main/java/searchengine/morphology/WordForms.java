@@ -0,0 +1,24 @@
+package searchengine.morphology;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Результат разбора слова словарём: нормальные формы и признак служебной части речи.
+ * Для слов, которых нет в словаре, список форм пуст.
+ */
+@Value
+public class WordForms {
+    public static final WordForms UNKNOWN = new WordForms(List.of(), false);
+
+    List<String> normalForms;
+    boolean serviceWord;
+
+    /**
+     * @return леммы, которые попадают в индекс: у служебных слов их нет
+     */
+    public List<String> getLemmas() {
+        return serviceWord ? List.of() : normalForms;
+    }
+}
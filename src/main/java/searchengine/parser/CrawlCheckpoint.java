@@ -0,0 +1,139 @@
+package searchengine.parser;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Контрольная точка обхода сайта в локальном файле: поколение сайта, в которое идёт обход, отпечатки
+ * просмотренных адресов, израсходованный бюджет страниц и адреса, принятые в очередь, но ещё не записанные в базу.
+ * Страницы, уже записанные в базу, хранятся там же со своими валидаторами, поэтому после остановки
+ * или перезапуска обход продолжается с того места, где остановился, а не с корня сайта.
+ */
+@Slf4j
+public class CrawlCheckpoint {
+    private static final int FORMAT_VERSION = 2;
+
+    private final Path file;
+    private final String root;
+    private long generation;
+    private long[] visited = new long[0];
+    private int admitted;
+    private Map<String, Integer> unfinished = new HashMap<>();
+
+    public CrawlCheckpoint(Path file, String root) {
+        this.file = file;
+        this.root = root;
+    }
+
+    /**
+     * @return файл контрольной точки сайта в каталоге {@code checkpointDir}
+     */
+    public static Path fileFor(String checkpointDir, String root) {
+        String name = PolitenessScheduler.hostOf(root) + "-" + Integer.toHexString(root.hashCode()) + ".checkpoint";
+        return Path.of(checkpointDir).resolve(name);
+    }
+
+    /**
+     * Сохраняет состояние очереди обхода. Файл сначала пишется во временный и затем заменяет прежний,
+     * поэтому остановка во время записи не портит последнюю контрольную точку.
+     */
+    public synchronized void save(CrawlFrontier frontier) {
+        long[] visitedNow = frontier.visitedFingerprints();
+        Map<String, Integer> unfinishedNow = frontier.unfinished();
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(root);
+                out.writeLong(generation);
+                out.writeInt(frontier.getAdmitted());
+                out.writeInt(visitedNow.length);
+                for (long fingerprint : visitedNow) {
+                    out.writeLong(fingerprint);
+                }
+                out.writeInt(unfinishedNow.size());
+                for (Map.Entry<String, Integer> entry : unfinishedNow.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue());
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Checkpoint saved - " + root + ": " + visitedNow.length + " visited, "
+                    + unfinishedNow.size() + " unfinished");
+        } catch (IOException e) {
+            log.error("Can't save crawl checkpoint - " + file, e);
+        }
+    }
+
+    /**
+     * Читает контрольную точку сайта.
+     *
+     * @return контрольная точка или null, если файла нет, он повреждён или относится к другому сайту
+     */
+    public static CrawlCheckpoint load(Path file, String root) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        CrawlCheckpoint checkpoint = new CrawlCheckpoint(file, root);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != FORMAT_VERSION || !in.readUTF().equals(root)) {
+                return null;
+            }
+            checkpoint.generation = in.readLong();
+            checkpoint.admitted = in.readInt();
+            checkpoint.visited = new long[in.readInt()];
+            for (int i = 0; i < checkpoint.visited.length; i++) {
+                checkpoint.visited[i] = in.readLong();
+            }
+            int unfinishedCount = in.readInt();
+            for (int i = 0; i < unfinishedCount; i++) {
+                checkpoint.unfinished.put(in.readUTF(), in.readInt());
+            }
+            return checkpoint;
+        } catch (IOException e) {
+            log.error("Can't read crawl checkpoint - " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return id строки site поколения, в которое шёл обход
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Задаёт поколение сайта, в которое идёт обход; вызывается до первого сохранения.
+     */
+    public void setGeneration(long generation) {
+        this.generation = generation;
+    }
+
+    /**
+     * Переносит сохранённое состояние в новую очередь обхода.
+     */
+    public void restore(CrawlFrontier frontier) {
+        frontier.restore(visited, admitted, unfinished);
+        log.info("Resuming crawl - " + root + ": " + visited.length + " visited, " + unfinished.size() + " unfinished");
+    }
+
+    public void delete() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.error("Can't delete crawl checkpoint - " + file, e);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package searchengine.parser;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Очередь обхода сайта: адреса, ожидающие загрузки, и множество уже принятых адресов.
+ * Адреса приводятся к каноническому виду {@link UrlNormalizer}, и каждый адрес попадает в очередь
+ * не больше одного раза, а общее число страниц
+ * и глубина обхода ограничены настройками сайта. Адрес выдаётся из очереди не раньше,
+ * чем это разрешит {@link PolitenessScheduler}, поэтому ожидание не занимает рабочие потоки.
+ */
+public class CrawlFrontier {
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    private final String root;
+    private final String normalizedRoot;
+    private final String rootHost;
+    private final int maxPages;
+    private final int maxDepth;
+    private final PolitenessScheduler scheduler;
+    private final UrlNormalizer normalizer;
+    private final BlockingQueue<CrawlUrl> queue = new DelayQueue<>();
+    private final VisitedSet visited;
+    private final Map<String, Integer> unfinished = new ConcurrentHashMap<>();
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean closed;
+
+    public CrawlFrontier(String root, int maxPages, int maxDepth, PolitenessScheduler scheduler,
+                         UrlNormalizer normalizer) {
+        this.root = root;
+        this.maxPages = maxPages;
+        this.maxDepth = maxDepth;
+        this.scheduler = scheduler;
+        this.normalizer = normalizer;
+        this.normalizedRoot = normalizer.normalize(root);
+        this.rootHost = PolitenessScheduler.hostOf(normalizedRoot);
+        this.visited = new VisitedSet(maxPages);
+    }
+
+    public String getRoot() {
+        return root;
+    }
+
+    /**
+     * @return канонический вид адреса, в котором он попадает в очередь
+     */
+    public String normalize(String url) {
+        return normalizer.normalize(url);
+    }
+
+    /**
+     * @param address адрес в каноническом виде
+     * @return true, если адрес ведёт на хост сайта и не совпадает с его корнем
+     */
+    public boolean isInside(String address) {
+        return !address.equals(normalizedRoot) && rootHost.equals(PolitenessScheduler.hostOf(address));
+    }
+
+    /**
+     * Добавляет адрес в очередь, если он ещё не встречался и бюджет обхода не исчерпан.
+     * В очередь попадает канонический вид адреса.
+     *
+     * @param url   адрес страницы
+     * @param depth глубина страницы относительно корня сайта
+     * @return true, если адрес поставлен в очередь
+     */
+    public boolean offer(String url, int depth) {
+        if (depth > maxDepth || admitted.get() >= maxPages) {
+            return false;
+        }
+        String address = normalizer.normalize(url);
+        if (!visited.add(address)) {
+            return false;
+        }
+        if (admitted.incrementAndGet() > maxPages) {
+            return false;
+        }
+        pending.incrementAndGet();
+        unfinished.put(address, depth);
+        queue.add(new CrawlUrl(address, depth, scheduler.reserve(address)));
+        return true;
+    }
+
+    /**
+     * Восстанавливает состояние обхода из контрольной точки: просмотренные адреса, израсходованный
+     * бюджет страниц и адреса, которые были приняты, но ещё не записаны в базу. Последние снова
+     * ставятся в очередь.
+     */
+    public void restore(long[] visitedFingerprints, int admittedPages, Map<String, Integer> unfinishedUrls) {
+        visited.restore(visitedFingerprints);
+        admitted.set(admittedPages);
+        for (Map.Entry<String, Integer> entry : unfinishedUrls.entrySet()) {
+            String address = entry.getKey();
+            visited.add(address);
+            pending.incrementAndGet();
+            unfinished.put(address, entry.getValue());
+            queue.add(new CrawlUrl(address, entry.getValue(), scheduler.reserve(address)));
+        }
+    }
+
+    /**
+     * Отмечает, что результат обработки адреса записан в базу (или страница не подлежит записи),
+     * и после перезапуска адрес загружать не нужно.
+     */
+    public void finish(String url) {
+        unfinished.remove(url);
+    }
+
+    public long[] visitedFingerprints() {
+        return visited.fingerprints();
+    }
+
+    public int getAdmitted() {
+        return admitted.get();
+    }
+
+    /**
+     * @return принятые, но ещё не записанные адреса с их глубиной
+     */
+    public Map<String, Integer> unfinished() {
+        return new HashMap<>(unfinished);
+    }
+
+    /**
+     * Отмечает адрес просмотренным без загрузки, например страницу, которая по карте сайта не менялась.
+     *
+     * @return true, если адрес ещё не встречался
+     */
+    public boolean skip(String url) {
+        return visited.add(normalizer.normalize(url));
+    }
+
+    /**
+     * Возвращает следующий адрес для загрузки.
+     *
+     * @return адрес или null, если очередь пуста и ни одна страница больше не обрабатывается,
+     * либо обход остановлен
+     */
+    public CrawlUrl next() throws InterruptedException {
+        while (pending.get() > 0 && !closed) {
+            CrawlUrl crawlUrl = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            if (crawlUrl != null) {
+                return crawlUrl;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает в очередь адрес, который сейчас нельзя загрузить (например, занят лимит запросов к хосту).
+     * Адрес остаётся в обработке и снова будет выдан через {@link #next()} в следующий слот,
+     * зарезервированный у {@link PolitenessScheduler}, поэтому повторы не чаще запросов к хосту.
+     */
+    public void retry(CrawlUrl crawlUrl) {
+        queue.add(new CrawlUrl(crawlUrl.getUrl(), crawlUrl.getDepth(), scheduler.reserve(crawlUrl.getUrl())));
+    }
+
+    /**
+     * Отмечает окончание обработки адреса, полученного через {@link #next()}.
+     * Вызывается после того, как найденные на странице ссылки уже добавлены в очередь.
+     */
+    public void complete(CrawlUrl crawlUrl) {
+        pending.decrementAndGet();
+    }
+
+    /**
+     * Останавливает обход: {@link #next()} больше ничего не выдаёт.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+}
@@ -0,0 +1,23 @@
+package searchengine.parser;
+
+import lombok.Value;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+@Value
+public class CrawlUrl implements Delayed {
+    String url;
+    int depth;
+    long notBefore;
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(notBefore - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+        return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+    }
+}
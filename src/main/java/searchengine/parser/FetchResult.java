@@ -0,0 +1,17 @@
+package searchengine.parser;
+
+import lombok.Value;
+
+@Value
+public class FetchResult {
+    String url;
+    int code;
+    String contentType;
+    String etag;
+    String lastModified;
+    byte[] body;
+    /**
+     * Тело превысило лимит размера и обрезано или, если обрезка отключена, отброшено.
+     */
+    boolean truncated;
+}
@@ -0,0 +1,9 @@
+package searchengine.parser;
+
+import lombok.Value;
+
+@Value
+public class FetchedPage {
+    CrawlUrl crawlUrl;
+    FetchResult result;
+}
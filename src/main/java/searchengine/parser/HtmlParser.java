@@ -1,69 +1,163 @@
 package searchengine.parser;
 
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Connection;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import searchengine.dto.statistics.PageStatistics;
+import searchengine.dto.statistics.PageValidators;
+import searchengine.utils.CleanHtmlCode;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.ForkJoinTask;
-import java.util.concurrent.RecursiveTask;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
+/**
+ * Этап извлечения: разбирает загруженную страницу один раз, передаёт найденные ссылки
+ * в {@link CrawlFrontier} и достаёт из документа HTML, заголовок, текст и его отпечаток {@link SimHash}.
+ * Для уже известных страниц ответ 304 или тот же хэш содержимого означает, что страница не изменилась,
+ * и тогда она не разбирается.
+ */
 @Slf4j
-public class HtmlParser extends RecursiveTask<List<PageStatistics>> {
-    private final String address;
-    private final List<String> addressList;
-    private final List<PageStatistics> statisticsPageList;
+public class HtmlParser {
+    private static final Set<String> SKIPPED_EXTENSIONS = Set.of("pdf", "jpg", "jpeg", "png");
 
-    public HtmlParser(String address, List<PageStatistics> statisticsPageList, List<String> addressList) {
-        this.address = address;
-        this.statisticsPageList = statisticsPageList;
-        this.addressList = addressList;
+    private final CrawlFrontier frontier;
+    private final Map<String, PageValidators> knownPages;
+
+    public HtmlParser(CrawlFrontier frontier, Map<String, PageValidators> knownPages) {
+        this.frontier = frontier;
+        this.knownPages = knownPages;
+    }
+
+    /**
+     * Разбор отдельных страниц вне обхода: ссылки не собираются, валидаторы не сравниваются.
+     */
+    public HtmlParser() {
+        this(null, Map.of());
     }
 
-    public Document getConnect(String url) {
-        Document doc = null;
+    /**
+     * Разбирает страницу, загруженную вне обхода.
+     *
+     * @return данные страницы или null, если страница не HTML
+     */
+    public PageStatistics parse(String url, FetchResult result) {
+        return parse(new CrawlUrl(url, 0, 0), result);
+    }
+
+    /**
+     * Разбирает страницу и отмечает её адрес обработанным в очереди обхода.
+     *
+     * @return данные страницы или null, если страница не HTML
+     */
+    public PageStatistics parse(FetchedPage fetchedPage) {
+        CrawlUrl crawlUrl = fetchedPage.getCrawlUrl();
         try {
-            Thread.sleep(150);
-            doc = Jsoup.connect(url).userAgent("Mozilla/5.0 (Windows; U; WindowsNT 5.1; en-US; rv1.8.1.6) Gecko/20070725 Firefox/2.0.0.6")
-                    .referrer("http://www.google.com")
-                    .get();
-        } catch (Exception e) {
-            log.debug("Can't get connected to the site" + url);
+            return parse(crawlUrl, fetchedPage.getResult());
+        } finally {
+            frontier.complete(crawlUrl);
         }
-        return doc;
     }
 
-    @Override
-    protected List<PageStatistics> compute() {
+    private PageStatistics parse(CrawlUrl crawlUrl, FetchResult result) {
+        String address = crawlUrl.getUrl();
+        if (result == null) {
+            return new PageStatistics(address, "", 500);
+        }
         try {
-            Thread.sleep(500);
-            Document document = getConnect(address);
-            String html = document.outerHtml();
-            Connection.Response response = document.connection().response();
-            int statusCode = response.statusCode();
-            PageStatistics pageStatistics = new PageStatistics(address, html, statusCode);
-            statisticsPageList.add(pageStatistics);
-            Elements elements = document.getElementsByTag("a").select("[href^=http], [href^=/]");
-            List<HtmlParser> taskList = new ArrayList<>();
-            for (Element el : elements) {
-                String link = el.attr("abs:href");
-                if (link.startsWith(el.baseUri()) && !link.equals(el.baseUri()) && !link.contains("#") && !link.contains(".pdf") && !link.contains(".jpg") && !link.contains(".JPG") && !link.contains(".png") && !addressList.contains(link)) {
-                    HtmlParser task = new HtmlParser(link, statisticsPageList, addressList);
-                    task.fork();
-                    taskList.add(task);
-                }
+            PageValidators known = knownPages.get(address);
+            if (known != null && result.getCode() == 304) {
+                return new PageStatistics(address, "", 200, known.getEtag(), known.getLastModified(),
+                        known.getContentHash(), true, "", "", 0);
+            }
+            if (!PageFetcher.isHtml(result.getContentType())) {
+                log.debug("Not an HTML page - " + address);
+                return null;
             }
-            taskList.forEach(ForkJoinTask::join);
-        } catch (Exception e) {
+            if (result.isTruncated() && result.getBody().length == 0) {
+                log.info("Page is too large, skipped - " + address);
+                return null;
+            }
+            String contentHash = sha256(result.getBody());
+            if (known != null && contentHash.equals(known.getContentHash())) {
+                return new PageStatistics(address, "", result.getCode(), result.getEtag(),
+                        result.getLastModified(), contentHash, true, "", "", 0);
+            }
+            Document document = Jsoup.parse(new ByteArrayInputStream(result.getBody()),
+                    charsetOf(result.getContentType()), address);
+            if (frontier != null) {
+                offerLinks(document, crawlUrl);
+            }
+            String body = CleanHtmlCode.clear(document, "body");
+            return new PageStatistics(address, document.outerHtml(), result.getCode(),
+                    result.getEtag(), result.getLastModified(), contentHash, false,
+                    CleanHtmlCode.clear(document, "title"), body, SimHash.of(body));
+        } catch (IOException | RuntimeException e) {
             log.debug("Parsing error - " + address);
-            PageStatistics pageStatistics = new PageStatistics(address, "", 500);
-            statisticsPageList.add(pageStatistics);
+            return new PageStatistics(address, "", 500);
+        }
+    }
+
+    private void offerLinks(Document document, CrawlUrl crawlUrl) {
+        Elements elements = document.getElementsByTag("a").select("[href^=http], [href^=/]");
+        for (Element el : elements) {
+            String link = el.attr("abs:href");
+            if (isCrawlable(link)) {
+                frontier.offer(link, crawlUrl.getDepth() + 1);
+            }
+        }
+    }
+
+    private static String sha256(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String charsetOf(String contentType) {
+        int index = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+        if (index < 0) {
+            return null;
+        }
+        String charset = contentType.substring(index + "charset=".length()).trim();
+        int end = charset.indexOf(';');
+        if (end >= 0) {
+            charset = charset.substring(0, end);
+        }
+        charset = charset.replace("\"", "").trim();
+        return charset.isEmpty() ? null : charset;
+    }
+
+    /**
+     * Ссылка сравнивается с сайтом в каноническом виде: адреса с другим регистром хоста, портом
+     * по умолчанию или фрагментом относятся к тому же сайту. Документы и картинки отсеиваются
+     * по расширению последнего сегмента пути, а не по подстроке в любом месте адреса.
+     */
+    private boolean isCrawlable(String link) {
+        String address = frontier.normalize(link);
+        return frontier.isInside(address) && !SKIPPED_EXTENSIONS.contains(extensionOf(address));
+    }
+
+    /**
+     * @param address адрес в каноническом виде (без фрагмента)
+     * @return расширение последнего сегмента пути в нижнем регистре или пустая строка
+     */
+    static String extensionOf(String address) {
+        int end = address.indexOf('?');
+        if (end < 0) {
+            end = address.length();
         }
-        return statisticsPageList;
+        int slash = address.lastIndexOf('/', end - 1);
+        int dot = address.lastIndexOf('.', end - 1);
+        return dot > slash ? address.substring(dot + 1, end).toLowerCase(Locale.ROOT) : "";
     }
 }
@@ -0,0 +1,231 @@
+package searchengine.parser;
+
+import lombok.extern.slf4j.Slf4j;
+import searchengine.config.SitesList;
+import searchengine.dto.statistics.PageStatistics;
+import searchengine.dto.statistics.PageValidators;
+import searchengine.morphology.Morphology;
+import searchengine.morphology.TermCounter;
+import searchengine.morphology.TermPositions;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Потоковый конвейер индексации сайта: загрузка → извлечение текста → лемматизация → пакетная запись.
+ * Этапы работают одновременно и связаны ограниченными очередями, поэтому страницы попадают в индекс
+ * ещё во время обхода, а расход памяти зависит от размеров очередей, а не от размера сайта.
+ * Почти точные копии уже обработанных страниц (см. {@link NearDuplicateIndex}) не лемматизируются.
+ * Страницы лемматизируются параллельно на пуле с перехватом работы ({@link ForkJoinPool})
+ * из {@code lemmatize-threads} потоков.
+ */
+@Slf4j
+public class IndexingPipeline {
+    private static final FetchedPage END_OF_FETCHED = new FetchedPage(null, null);
+    private static final PageStatistics END_OF_EXTRACTED = new PageStatistics(null, null, 0);
+    private static final LemmatizedPage END_OF_LEMMATIZED = new LemmatizedPage(null, null, null, null, null);
+    private static final long FLUSH_INTERVAL_MS = 1000;
+
+    private final CrawlFrontier frontier;
+    private final PageFetcher pageFetcher;
+    private final Morphology morphology;
+    private final Map<String, PageValidators> knownPages;
+    private final NearDuplicateIndex duplicates;
+    private final CrawlCheckpoint checkpoint;
+    private final SitesList settings;
+    private final Consumer<List<LemmatizedPage>> persister;
+    private final HtmlParser htmlParser;
+    private final BlockingQueue<FetchedPage> fetchedQueue;
+    private final BlockingQueue<PageStatistics> extractedQueue;
+    private final BlockingQueue<LemmatizedPage> lemmatizedQueue;
+    private volatile Thread runner;
+    private volatile RuntimeException writeFailure;
+
+    /**
+     * @param duplicates индекс отпечатков страниц сайта или null, если копии не ищутся
+     * @param checkpoint контрольная точка, которая периодически сохраняется после записи пачки
+     *                   и при остановке обхода, или null
+     * @param persister  записывает пачку обработанных страниц; вызывается из одного потока
+     */
+    public IndexingPipeline(CrawlFrontier frontier, PageFetcher pageFetcher, Morphology morphology,
+                            Map<String, PageValidators> knownPages, NearDuplicateIndex duplicates,
+                            CrawlCheckpoint checkpoint, SitesList settings,
+                            Consumer<List<LemmatizedPage>> persister) {
+        this.frontier = frontier;
+        this.pageFetcher = pageFetcher;
+        this.morphology = morphology;
+        this.knownPages = knownPages;
+        this.duplicates = duplicates;
+        this.checkpoint = checkpoint;
+        this.settings = settings;
+        this.persister = persister;
+        this.htmlParser = new HtmlParser(frontier, knownPages);
+        this.fetchedQueue = new ArrayBlockingQueue<>(settings.getPipelineQueueSize());
+        this.extractedQueue = new ArrayBlockingQueue<>(settings.getPipelineQueueSize());
+        this.lemmatizedQueue = new ArrayBlockingQueue<>(settings.getPipelineQueueSize());
+    }
+
+    /**
+     * Обходит сайт в текущем потоке и возвращается, когда все найденные страницы записаны.
+     *
+     * @throws IllegalStateException если пачку страниц не удалось записать; обход при этом останавливается,
+     *                               а незаписанные страницы остаются в контрольной точке
+     */
+    public void run() throws InterruptedException {
+        runner = Thread.currentThread();
+        int extractThreads = settings.getExtractThreads();
+        int lemmatizeThreads = settings.getLemmatizeThreads();
+        ExecutorService stages = Executors.newFixedThreadPool(extractThreads + 2);
+        ForkJoinPool lemmatizers = new ForkJoinPool(lemmatizeThreads);
+        boolean completed = false;
+        try {
+            List<Future<?>> extractors = start(stages, extractThreads, this::extract);
+            List<Future<?>> dispatchers = start(stages, 1, () -> lemmatize(lemmatizers));
+            List<Future<?>> writers = start(stages, 1, this::persist);
+
+            new SiteCrawler(frontier, fetchedQueue, pageFetcher, knownPages).run();
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            finish(fetchedQueue, END_OF_FETCHED, extractors);
+            finish(extractedQueue, END_OF_EXTRACTED, dispatchers);
+            finish(lemmatizedQueue, END_OF_LEMMATIZED, writers);
+            completed = true;
+        } catch (InterruptedException e) {
+            if (writeFailure != null) {
+                throw new IllegalStateException("Не удалось записать страницы - " + frontier.getRoot(), writeFailure);
+            }
+            throw e;
+        } finally {
+            frontier.close();
+            stages.shutdownNow();
+            lemmatizers.shutdownNow();
+            if (!completed && checkpoint != null) {
+                checkpoint.save(frontier);
+            }
+        }
+    }
+
+    private List<Future<?>> start(ExecutorService stages, int threads, Callable<Void> stage) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(stages.submit(stage));
+        }
+        return futures;
+    }
+
+    private <T> void finish(BlockingQueue<T> queue, T endMarker, List<Future<?>> consumers) throws InterruptedException {
+        for (int i = 0; i < consumers.size(); i++) {
+            queue.put(endMarker);
+        }
+        for (Future<?> consumer : consumers) {
+            try {
+                consumer.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Indexing stage failed - " + frontier.getRoot(), e.getCause());
+            }
+        }
+    }
+
+    private Void extract() throws InterruptedException {
+        FetchedPage fetchedPage;
+        while ((fetchedPage = fetchedQueue.take()) != END_OF_FETCHED) {
+            PageStatistics page = htmlParser.parse(fetchedPage);
+            if (page != null) {
+                extractedQueue.put(page);
+            } else {
+                frontier.finish(fetchedPage.getCrawlUrl().getUrl());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Раздаёт страницы на лемматизацию в пул и передаёт результаты дальше в порядке поступления.
+     * Одновременно в пуле не больше {@code pipeline-queue-size} страниц.
+     */
+    private Void lemmatize(ForkJoinPool lemmatizers) throws InterruptedException {
+        Deque<ForkJoinTask<LemmatizedPage>> inFlight = new ArrayDeque<>();
+        PageStatistics page;
+        while ((page = extractedQueue.take()) != END_OF_EXTRACTED) {
+            PageStatistics next = page;
+            inFlight.add(lemmatizers.submit(() -> lemmatize(next)));
+            if (inFlight.size() >= settings.getPipelineQueueSize()) {
+                lemmatizedQueue.put(inFlight.poll().join());
+            }
+        }
+        while (!inFlight.isEmpty()) {
+            lemmatizedQueue.put(inFlight.poll().join());
+        }
+        return null;
+    }
+
+    private LemmatizedPage lemmatize(PageStatistics page) {
+        TermCounter titleLemmas = new TermCounter();
+        TermCounter bodyLemmas = new TermCounter();
+        TermPositions positions = new TermPositions();
+        String aliasOf = null;
+        if (!page.isUnchanged() && page.getCode() < 400 && duplicates != null) {
+            aliasOf = duplicates.findOrAdd(page.getUrl(), page.getFingerprint());
+        }
+        if (!page.isUnchanged() && page.getCode() < 400 && aliasOf == null) {
+            try {
+                titleLemmas = morphology.countLemmas(page.getTitle(), positions, 0);
+                bodyLemmas = morphology.countLemmas(page.getBody(), positions,
+                        TermPositions.bodyOffset(page.getTitle()));
+            } catch (RuntimeException e) {
+                log.error("Lemmatization error - " + page.getUrl(), e);
+            }
+        }
+        return new LemmatizedPage(page, titleLemmas, bodyLemmas, positions, aliasOf);
+    }
+
+    private Void persist() throws InterruptedException {
+        List<LemmatizedPage> batch = new ArrayList<>();
+        long lastCheckpoint = System.currentTimeMillis();
+        while (true) {
+            LemmatizedPage page = lemmatizedQueue.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            if (page == END_OF_LEMMATIZED) {
+                flush(batch);
+                return null;
+            }
+            if (page != null) {
+                batch.add(page);
+            }
+            if (batch.size() >= settings.getPersistBatchSize() || (page == null && !batch.isEmpty())) {
+                flush(batch);
+            }
+            if (checkpoint != null && System.currentTimeMillis() - lastCheckpoint >= settings.getCheckpointInterval()) {
+                checkpoint.save(frontier);
+                lastCheckpoint = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Записывает пачку. Ошибка записи останавливает обход: страницы пачки не отмечаются пройденными
+     * и не выбрасываются, поэтому остаются в контрольной точке.
+     */
+    private void flush(List<LemmatizedPage> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            persister.accept(new ArrayList<>(batch));
+        } catch (RuntimeException e) {
+            log.error("Can't save " + batch.size() + " pages - " + frontier.getRoot(), e);
+            writeFailure = e;
+            runner.interrupt();
+            throw e;
+        }
+        for (LemmatizedPage page : batch) {
+            frontier.finish(page.getPage().getUrl());
+        }
+        batch.clear();
+    }
+}
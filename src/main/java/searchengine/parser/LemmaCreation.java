@@ -1,54 +0,0 @@
-package searchengine.parser;
-
-import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.stereotype.Component;
-import searchengine.dto.statistics.StatisticsLemma;
-import searchengine.model.Page;
-import searchengine.model.Site;
-import searchengine.morphology.Morphology;
-import searchengine.repositories.PageRepository;
-import searchengine.utils.CleanHtmlCode;
-
-import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
-
-@Component
-@RequiredArgsConstructor
-@Slf4j
-public class LemmaCreation implements LemmaParser {
-    private final PageRepository pageRepository;
-    private final Morphology morphology;
-    private List<StatisticsLemma> statisticsLemmaList;
-
-    public List<StatisticsLemma> getLemmaDtoList() {
-        return statisticsLemmaList;
-    }
-
-    @Override
-    public void run(Site site) {
-        statisticsLemmaList = new CopyOnWriteArrayList<>();
-        Iterable<Page> pageList = pageRepository.findAll();
-        TreeMap<String, Integer> lemmaList = new TreeMap<>();
-        for (Page page : pageList) {
-            String content = page.getContent();
-            String title = CleanHtmlCode.clear(content, "title");
-            String body = CleanHtmlCode.clear(content, "body");
-            HashMap<String, Integer> titleList = morphology.getLemmaList(title);
-            HashMap<String, Integer> bodyList = morphology.getLemmaList(body);
-            Set<String> allTheWords = new HashSet<>();
-            allTheWords.addAll(titleList.keySet());
-            allTheWords.addAll(bodyList.keySet());
-            for (String word : allTheWords) {
-                int frequency = lemmaList.getOrDefault(word, 0) + 1;
-                lemmaList.put(word, frequency);
-            }
-        }
-        for (String lemma : lemmaList.keySet()) {
-            Integer frequency = lemmaList.get(lemma);
-            statisticsLemmaList.add(new StatisticsLemma(lemma, frequency));
-        }
-    }
-
-
-}
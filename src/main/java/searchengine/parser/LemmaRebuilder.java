@@ -0,0 +1,189 @@
+package searchengine.parser;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.model.Status;
+import searchengine.morphology.Morphology;
+import searchengine.morphology.TermCounter;
+import searchengine.morphology.TermPositions;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.storage.ContentCompactor;
+import searchengine.storage.ContentStore;
+import searchengine.utils.CleanHtmlCode;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Пересчёт лемм и индекса одного сайта по сохранённому тексту страниц, без повторной загрузки, —
+ * например, после изменения морфологии. Пересчёт строит новое поколение сайта (см. {@link SiteGenerations}):
+ * страницы живого поколения читаются пачками по {@code persist-batch-size} с продолжением по id
+ * и копируются в новое поколение (содержимое в хранилище у копий общее), каждая пачка лемматизируется
+ * параллельно на пуле из {@code lemmatize-threads} потоков и записывается так же, как при обходе.
+ * До переключения поиск идёт по прежнему индексу; прерванный или упавший пересчёт удаляет новое
+ * поколение, а живое остаётся как было. Работа пропорциональна числу страниц этого сайта.
+ * Пока идёт пересчёт, хранилище не уплотняется: копии ссылаются на те же записи, что и живые страницы,
+ * и перенос записи до фиксации копии оставил бы её ссылку на удалённый сегмент.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LemmaRebuilder {
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final SitesList sitesList;
+    private final Morphology morphology;
+    private final PageIndexer pageIndexer;
+    private final ContentStore contentStore;
+    private final SiteGenerations siteGenerations;
+    private final ContentCompactor contentCompactor;
+
+    /**
+     * @param url адрес сайта; сайт, которого нет в базе, пропускается
+     */
+    public void rebuild(String url) {
+        Site site = siteRepository.findFirstByUrlAndLiveTrue(url);
+        if (site == null) {
+            return;
+        }
+        ContentCompactor.Hold compaction;
+        try {
+            compaction = contentCompactor.hold();
+        } catch (InterruptedException e) {
+            log.error("Lemma rebuild stopped - " + url);
+            return;
+        }
+        try (compaction) {
+            rebuild(site);
+        }
+    }
+
+    private void rebuild(Site site) {
+        String url = site.getUrl();
+        siteGenerations.dropShadows(url);
+        Site shadow = siteGenerations.startShadow(url, site.getName());
+        ForkJoinPool lemmatizers = new ForkJoinPool(sitesList.getLemmatizeThreads());
+        try {
+            int pages = rebuild(site, shadow, lemmatizers);
+            shadow.setStatus(Status.INDEXED);
+            shadow.setStatusTime(LocalDateTime.now());
+            siteRepository.save(shadow);
+            siteGenerations.promote(shadow);
+            log.info("Lemmas rebuilt - " + url + ": " + pages + " pages");
+        } catch (InterruptedException e) {
+            log.error("Lemma rebuild stopped - " + url);
+            siteGenerations.drop(shadow.getId());
+        } catch (RuntimeException e) {
+            log.error("Lemma rebuild failed - " + url, e);
+            siteGenerations.drop(shadow.getId());
+            site.setLastError("Пересчёт лемм не удался: " + e.getMessage());
+            siteRepository.save(site);
+        } finally {
+            lemmatizers.shutdownNow();
+        }
+    }
+
+    /**
+     * Копирует страницы сайта в новое поколение: сначала канонические с их леммами и индексом,
+     * затем копии, ссылки которых переводятся на новые id канонических страниц.
+     */
+    private int rebuild(Site site, Site shadow, ForkJoinPool lemmatizers) throws InterruptedException {
+        Map<String, Long> lemmaIds = new HashMap<>();
+        Map<Long, Long> copies = new HashMap<>();
+        int batchSize = sitesList.getPersistBatchSize();
+        int pages = 0;
+        long after = 0;
+        List<Page> batch;
+        while (!(batch = pageRepository.findCanonicalBatch(site, after, PageRequest.of(0, batchSize))).isEmpty()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            List<Page> current = batch;
+            List<PageLemmas> lemmatized;
+            try {
+                lemmatized = lemmatizers.submit(() -> current.parallelStream()
+                        .map(page -> lemmatize(page, copyOf(page, shadow)))
+                        .toList()).get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Lemmatization failed - " + site.getUrl(), e.getCause());
+            }
+            pageIndexer.indexPages(shadow, List.of(), lemmatized, lemmaIds);
+            for (int i = 0; i < batch.size(); i++) {
+                copies.put(batch.get(i).getId(), lemmatized.get(i).getPage().getId());
+            }
+            after = batch.get(batch.size() - 1).getId();
+            pages += batch.size();
+        }
+        after = 0;
+        while (!(batch = pageRepository.findAliasBatch(site, after, PageRequest.of(0, batchSize))).isEmpty()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            List<Page> aliases = new ArrayList<>();
+            for (Page page : batch) {
+                Long canonical = copies.get(page.getAliasOf());
+                if (canonical != null) {
+                    Page alias = copyOf(page, shadow);
+                    alias.setAliasOf(canonical);
+                    aliases.add(alias);
+                }
+            }
+            pageRepository.saveAll(aliases);
+            after = batch.get(batch.size() - 1).getId();
+            pages += aliases.size();
+        }
+        return pages;
+    }
+
+    private Page copyOf(Page page, Site shadow) {
+        Page copy = new Page();
+        copy.setSiteId(shadow);
+        copy.setPath(page.getPath());
+        copy.setCode(page.getCode());
+        copy.setContentOffset(page.getContentOffset());
+        copy.setContentLength(page.getContentLength());
+        copy.setTitle(page.getTitle());
+        copy.setTextOffset(page.getTextOffset());
+        copy.setTextLength(page.getTextLength());
+        copy.setEtag(page.getEtag());
+        copy.setLastModified(page.getLastModified());
+        copy.setContentHash(page.getContentHash());
+        copy.setFingerprint(page.getFingerprint());
+        return copy;
+    }
+
+    /**
+     * Лемматизирует сохранённый текст страницы; страницы с ошибкой копируются без лемм.
+     */
+    private PageLemmas lemmatize(Page page, Page copy) {
+        TermPositions positions = new TermPositions();
+        if (page.getCode() >= 400) {
+            return new PageLemmas(copy, new TermCounter(), new TermCounter(), positions);
+        }
+        String title = page.getTitle();
+        String body;
+        if (page.getTextOffset() != null || title != null) {
+            body = contentStore.read(page.getTextOffset(), page.getTextLength());
+        } else {
+            Document document = Jsoup.parse(contentStore.read(page.getContentOffset(), page.getContentLength()));
+            title = CleanHtmlCode.clear(document, "title");
+            body = CleanHtmlCode.clear(document, "body");
+        }
+        TermCounter titleLemmas = morphology.countLemmas(title, positions, 0);
+        TermCounter bodyLemmas = morphology.countLemmas(body, positions, TermPositions.bodyOffset(title));
+        return new PageLemmas(copy, titleLemmas, bodyLemmas, positions);
+    }
+}
@@ -0,0 +1,18 @@
+package searchengine.parser;
+
+import lombok.Value;
+import searchengine.dto.statistics.PageStatistics;
+import searchengine.morphology.TermCounter;
+import searchengine.morphology.TermPositions;
+
+@Value
+public class LemmatizedPage {
+    PageStatistics page;
+    TermCounter titleLemmas;
+    TermCounter bodyLemmas;
+    TermPositions positions;
+    /**
+     * Адрес канонической страницы, если эта страница — её почти точная копия, иначе null.
+     */
+    String aliasOf;
+}
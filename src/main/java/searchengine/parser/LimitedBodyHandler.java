@@ -0,0 +1,160 @@
+package searchengine.parser;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Читает тело ответа сразу в {@link FetchResult}, не загружая лишнего: по заголовкам решает,
+ * нужно ли тело вообще (неподходящий Content-Type или заявленный Content-Length больше лимита),
+ * а при чтении прекращает загрузку на лимите размера и либо обрезает документ, либо отбрасывает его.
+ */
+public class LimitedBodyHandler implements HttpResponse.BodyHandler<FetchResult> {
+    private static final byte[] EMPTY = new byte[0];
+
+    private final String url;
+    private final Predicate<String> acceptedType;
+    private final int maxBodySize;
+    private final boolean truncate;
+
+    /**
+     * @param acceptedType проверка Content-Type; тело ответа другого типа не читается
+     * @param maxBodySize  наибольший размер тела в байтах
+     * @param truncate     true — обрезать тело на лимите, false — отбросить тело целиком
+     */
+    public LimitedBodyHandler(String url, Predicate<String> acceptedType, int maxBodySize, boolean truncate) {
+        this.url = url;
+        this.acceptedType = acceptedType;
+        this.maxBodySize = maxBodySize;
+        this.truncate = truncate;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<FetchResult> apply(HttpResponse.ResponseInfo info) {
+        String contentType = info.headers().firstValue("Content-Type").orElse("");
+        String etag = info.headers().firstValue("ETag").orElse(null);
+        String lastModified = info.headers().firstValue("Last-Modified").orElse(null);
+        long contentLength = info.headers().firstValueAsLong("Content-Length").orElse(-1);
+        if (!acceptedType.test(contentType.toLowerCase(Locale.ROOT))) {
+            return new SkippedBodySubscriber(
+                    new FetchResult(url, info.statusCode(), contentType, etag, lastModified, EMPTY, false));
+        }
+        if (contentLength > maxBodySize && !truncate) {
+            return new SkippedBodySubscriber(
+                    new FetchResult(url, info.statusCode(), contentType, etag, lastModified, EMPTY, true));
+        }
+        return new LimitedBodySubscriber(body -> new FetchResult(url, info.statusCode(), contentType, etag,
+                lastModified, body, false), body -> new FetchResult(url, info.statusCode(), contentType, etag,
+                lastModified, truncate ? body : EMPTY, true));
+    }
+
+    /**
+     * Отменяет загрузку тела сразу после заголовков. {@code BodySubscribers.replacing} для этого не годится:
+     * он запрашивает и отбрасывает всё тело, и видео или архив скачивались бы целиком.
+     */
+    private static class SkippedBodySubscriber implements HttpResponse.BodySubscriber<FetchResult> {
+        private final CompletableFuture<FetchResult> result;
+
+        SkippedBodySubscriber(FetchResult placeholder) {
+            this.result = CompletableFuture.completedFuture(placeholder);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.cancel();
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+        }
+
+        @Override
+        public void onError(Throwable error) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        @Override
+        public CompletionStage<FetchResult> getBody() {
+            return result;
+        }
+    }
+
+    /**
+     * Копит полученные буферы как есть (клиент их не переиспользует) и копирует их
+     * в массив тела один раз, когда его размер уже известен.
+     */
+    private class LimitedBodySubscriber implements HttpResponse.BodySubscriber<FetchResult> {
+        private final CompletableFuture<FetchResult> result = new CompletableFuture<>();
+        private final List<ByteBuffer> received = new ArrayList<>();
+        private int size;
+        private final Function<byte[], FetchResult> complete;
+        private final Function<byte[], FetchResult> overflow;
+        private Flow.Subscription subscription;
+
+        LimitedBodySubscriber(Function<byte[], FetchResult> complete,
+                              Function<byte[], FetchResult> overflow) {
+            this.complete = complete;
+            this.overflow = overflow;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            for (ByteBuffer buffer : buffers) {
+                int room = maxBodySize - size;
+                if (buffer.remaining() > room) {
+                    received.add(buffer.slice(buffer.position(), room));
+                    size += room;
+                    subscription.cancel();
+                    result.complete(overflow.apply(join()));
+                    return;
+                }
+                received.add(buffer);
+                size += buffer.remaining();
+            }
+            subscription.request(1);
+        }
+
+        private byte[] join() {
+            byte[] body = new byte[size];
+            int offset = 0;
+            for (ByteBuffer buffer : received) {
+                int length = buffer.remaining();
+                buffer.get(body, offset, length);
+                offset += length;
+            }
+            received.clear();
+            return body;
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            result.completeExceptionally(error);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(complete.apply(join()));
+        }
+
+        @Override
+        public CompletionStage<FetchResult> getBody() {
+            return result;
+        }
+    }
+}
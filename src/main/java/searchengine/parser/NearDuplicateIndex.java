@@ -0,0 +1,80 @@
+package searchengine.parser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Индекс отпечатков {@link SimHash} страниц сайта для поиска почти одинаковых страниц
+ * (версии для печати, сортировки, варианты пагинации). Отпечаток делится на четыре 16-битные части,
+ * и у отпечатков на расстоянии не больше трёх бит хотя бы одна часть совпадает, поэтому кандидаты
+ * ищутся только в четырёх корзинах, а не перебором всех страниц.
+ */
+public class NearDuplicateIndex {
+    private static final int MAX_DISTANCE = 3;
+    private static final int BANDS = 4;
+    private static final int BAND_BITS = 64 / BANDS;
+
+    private final List<Map<Integer, List<Entry>>> bands = new ArrayList<>();
+
+    public NearDuplicateIndex() {
+        for (int i = 0; i < BANDS; i++) {
+            bands.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Ищет страницу, почти совпадающую с данной; если такой нет, запоминает данную как каноническую.
+     * Проверка и добавление выполняются атомарно, поэтому из двух одновременно обработанных копий
+     * канонической становится ровно одна.
+     *
+     * @param fingerprint отпечаток страницы; 0 означает, что страница не сравнивается
+     * @return адрес канонической страницы или null
+     */
+    public synchronized String findOrAdd(String url, long fingerprint) {
+        if (fingerprint == 0) {
+            return null;
+        }
+        for (int band = 0; band < BANDS; band++) {
+            List<Entry> candidates = bands.get(band).get(bandOf(fingerprint, band));
+            if (candidates == null) {
+                continue;
+            }
+            for (Entry candidate : candidates) {
+                if (!candidate.url.equals(url) && SimHash.distance(candidate.fingerprint, fingerprint) <= MAX_DISTANCE) {
+                    return candidate.url;
+                }
+            }
+        }
+        add(url, fingerprint);
+        return null;
+    }
+
+    /**
+     * Добавляет уже проиндексированную каноническую страницу.
+     */
+    public synchronized void add(String url, long fingerprint) {
+        if (fingerprint == 0) {
+            return;
+        }
+        Entry entry = new Entry(url, fingerprint);
+        for (int band = 0; band < BANDS; band++) {
+            bands.get(band).computeIfAbsent(bandOf(fingerprint, band), key -> new ArrayList<>(1)).add(entry);
+        }
+    }
+
+    private static int bandOf(long fingerprint, int band) {
+        return (int) ((fingerprint >>> (band * BAND_BITS)) & 0xFFFF);
+    }
+
+    private static class Entry {
+        private final String url;
+        private final long fingerprint;
+
+        Entry(String url, long fingerprint) {
+            this.url = url;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package searchengine.parser;
+
+import lombok.Value;
+import searchengine.model.Page;
+
+@Value
+public class PageAlias {
+    Page page;
+    String canonicalPath;
+}
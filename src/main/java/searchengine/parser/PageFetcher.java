@@ -0,0 +1,119 @@
+package searchengine.parser;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+import searchengine.dto.statistics.PageValidators;
+
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Асинхронная загрузка страниц через общий {@link HttpClient}.
+ * Клиент переиспользует соединения (keep-alive, HTTP/2 там, где сервер его поддерживает),
+ * а число одновременных запросов к одному хосту ограничено {@code max-in-flight-per-host}.
+ * Тело ответа читается потоком через {@link LimitedBodyHandler}: у страниц не-HTML оно не загружается,
+ * а размер тела ограничен {@code max-body-size}.
+ * Обработчики ответов выполняются на общем пуле из {@code crawl-threads} потоков.
+ * Время кэширования DNS задаётся параметром JVM при запуске (см. README), а не из приложения.
+ */
+@Slf4j
+@Component
+public class PageFetcher {
+    private static final int MAX_RESOURCE_SIZE = 50 * 1024 * 1024;
+    private final SitesList sitesList;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    public PageFetcher(SitesList sitesList) {
+        this.sitesList = sitesList;
+        this.executor = Executors.newFixedThreadPool(sitesList.getCrawlThreads());
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(sitesList.getConnectTimeout()))
+                .executor(executor)
+                .build();
+    }
+
+    /**
+     * Занимает слот для запроса к хосту адреса, не блокируя поток.
+     *
+     * @return false, если к хосту уже выполняется максимальное число запросов
+     */
+    public boolean tryAcquire(String url) {
+        return permits(url).tryAcquire();
+    }
+
+    public void release(String url) {
+        permits(url).release();
+    }
+
+    /**
+     * Загружает служебный файл сайта (robots.txt, карту сайта) любого типа.
+     * Результат (и все зависимые от него этапы) обрабатывается на пуле загрузчика.
+     */
+    public CompletableFuture<FetchResult> fetch(String url) {
+        return send(url, null, new LimitedBodyHandler(url, type -> true, MAX_RESOURCE_SIZE, false));
+    }
+
+    /**
+     * Загружает страницу условным GET-запросом: при известных ETag или Last-Modified сервер может ответить
+     * 304 без тела. Тело читается, только если это HTML.
+     *
+     * @param validators сохранённые валидаторы страницы или null
+     */
+    public CompletableFuture<FetchResult> fetch(String url, PageValidators validators) {
+        return send(url, validators, new LimitedBodyHandler(url, PageFetcher::isHtml,
+                sitesList.getMaxBodySize(), sitesList.isTruncateOversized()));
+    }
+
+    public static boolean isHtml(String contentType) {
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.isEmpty() || type.startsWith("text/html") || type.startsWith("application/xhtml+xml");
+    }
+
+    private CompletableFuture<FetchResult> send(String url, PageValidators validators,
+                                                HttpResponse.BodyHandler<FetchResult> bodyHandler) {
+        HttpRequest request;
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofMillis(sitesList.getFetchTimeout()))
+                    .header("User-Agent", sitesList.getUserAgent())
+                    .header("Referer", "http://www.google.com")
+                    .GET();
+            if (validators != null && validators.getEtag() != null) {
+                builder.header("If-None-Match", validators.getEtag());
+            }
+            if (validators != null && validators.getLastModified() != null) {
+                builder.header("If-Modified-Since", validators.getLastModified());
+            }
+            request = builder.build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return httpClient.sendAsync(request, bodyHandler).thenApply(HttpResponse::body);
+    }
+
+    private Semaphore permits(String url) {
+        return hostPermits.computeIfAbsent(PolitenessScheduler.hostOf(url),
+                host -> new Semaphore(sitesList.getMaxInFlightPerHost()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
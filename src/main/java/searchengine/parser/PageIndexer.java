@@ -0,0 +1,210 @@
+package searchengine.parser;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.statistics.IndexRow;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.morphology.TermCounter;
+import searchengine.repositories.BulkWriter;
+import searchengine.repositories.IndexRepository;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.storage.InvertedIndex;
+
+import java.util.*;
+
+/**
+ * Индексация отдельной страницы: добавляет или убирает её вклад в частоты лемм сайта
+ * и её строки в index_table, не трогая остальные страницы. Те же изменения после фиксации транзакции
+ * попадают в {@link InvertedIndex}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PageIndexer {
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+    private final IndexRepository indexRepository;
+    private final BulkWriter bulkWriter;
+    private final InvertedIndex invertedIndex;
+
+    /**
+     * Сохраняет пачку страниц и за один проход по леммам каждой страницы меняет частоты и готовит
+     * её строки индекса. Id лемм берутся из {@code lemmaIds} — таблицы, которую обход сайта держит
+     * в памяти от пачки к пачке; из базы одним запросом читаются только леммы, которых в ней ещё нет.
+     * Частоты увеличиваются запросами UPDATE по id, сгруппированными по приросту; новые леммы и строки
+     * индекса вставляются пакетами через {@link BulkWriter}.
+     *
+     * @param replaced сохранённые страницы, чей прежний вклад заменяется этой пачкой; он вычитается в той же
+     *                 транзакции, поэтому при откате пачки остаётся на месте
+     */
+    @Transactional
+    public void indexPages(Site site, List<Page> replaced, List<PageLemmas> pages, Map<String, Long> lemmaIds) {
+        for (Page page : replaced) {
+            subtractPage(page);
+        }
+        List<Page> savedPages = new ArrayList<>();
+        TermCounter pagesPerLemma = new TermCounter();
+        for (PageLemmas page : pages) {
+            savedPages.add(pageRepository.save(page.getPage()));
+            if (page.getPage().getCode() < 400) {
+                for (String word : wordsOf(page)) {
+                    pagesPerLemma.increment(word);
+                }
+            }
+        }
+        // строки индекса вставляются через JDBC и должны видеть страницы
+        pageRepository.flush();
+        if (pagesPerLemma.isEmpty()) {
+            return;
+        }
+        List<String> unknown = new ArrayList<>();
+        pagesPerLemma.forEach((word, count) -> {
+            if (!lemmaIds.containsKey(word)) {
+                unknown.add(word);
+            }
+        });
+        if (!unknown.isEmpty()) {
+            for (Lemma lemma : lemmaRepository.findLemmaListBySite(unknown, site)) {
+                lemmaIds.put(lemma.getLemma(), lemma.getId());
+            }
+        }
+
+        Map<String, Integer> created = new HashMap<>();
+        Map<Integer, List<Long>> idsByIncrement = new HashMap<>();
+        pagesPerLemma.forEach((word, count) -> {
+            Long id = lemmaIds.get(word);
+            if (id == null) {
+                created.put(word, count);
+            } else {
+                idsByIncrement.computeIfAbsent(count, c -> new ArrayList<>()).add(id);
+            }
+        });
+        try {
+            lemmaIds.putAll(bulkWriter.insertLemmas(site.getId(), created));
+            idsByIncrement.forEach((increment, ids) -> lemmaRepository.incrementFrequency(ids, increment));
+
+            List<IndexRow> indexList = new ArrayList<>();
+            InvertedIndex.Batch batch = invertedIndex.batch(site.getId());
+            for (int i = 0; i < pages.size(); i++) {
+                PageLemmas page = pages.get(i);
+                if (page.getPage().getCode() < 400) {
+                    addIndexRows(indexList, batch, savedPages.get(i), page, lemmaIds);
+                }
+            }
+            bulkWriter.insertIndexRows(indexList);
+            batch.apply();
+        } catch (RuntimeException e) {
+            // леммы этой пачки откатятся вместе с транзакцией
+            lemmaIds.keySet().removeAll(created.keySet());
+            throw e;
+        }
+    }
+
+    /**
+     * Переиндексирует одну уже сохранённую или новую страницу по разнице лемм: частоты меняются
+     * только у лемм, которые на странице появились (upsert) или исчезли, строки индекса страницы
+     * заменяются целиком.
+     */
+    @Transactional
+    public void updatePage(Site site, PageLemmas page) {
+        Page dbPage = pageRepository.saveAndFlush(page.getPage());
+        Set<String> newWords = dbPage.getCode() < 400 ? wordsOf(page) : Set.of();
+        Set<String> oldWords = new HashSet<>();
+        List<Long> removedIds = new ArrayList<>();
+        for (Lemma lemma : lemmaRepository.findByPage(dbPage.getId())) {
+            oldWords.add(lemma.getLemma());
+            if (!newWords.contains(lemma.getLemma())) {
+                removedIds.add(lemma.getId());
+            }
+        }
+        if (!removedIds.isEmpty()) {
+            lemmaRepository.decrementFrequency(removedIds);
+        }
+        for (String word : newWords) {
+            if (!oldWords.contains(word)) {
+                bulkWriter.upsertIncrement(site.getId(), word);
+            }
+        }
+        indexRepository.deleteByPage(dbPage.getId());
+        if (!removedIds.isEmpty()) {
+            lemmaRepository.deleteUnusedBySite(site.getId());
+        }
+        InvertedIndex.Batch batch = invertedIndex.batch(site.getId());
+        batch.remove(dbPage.getId());
+        if (newWords.isEmpty()) {
+            batch.apply();
+            return;
+        }
+        Map<String, Long> lemmaIds = new HashMap<>();
+        for (Lemma lemma : lemmaRepository.findLemmaListBySite(new ArrayList<>(newWords), site)) {
+            lemmaIds.put(lemma.getLemma(), lemma.getId());
+        }
+        List<IndexRow> indexList = new ArrayList<>();
+        addIndexRows(indexList, batch, dbPage, page, lemmaIds);
+        bulkWriter.insertIndexRows(indexList);
+        batch.apply();
+    }
+
+    private void addIndexRows(List<IndexRow> indexList, InvertedIndex.Batch batch, Page dbPage, PageLemmas page,
+                              Map<String, Long> lemmaIds) {
+        TermCounter titleList = page.getTitleLemmas();
+        TermCounter bodyList = page.getBodyLemmas();
+        for (String word : wordsOf(page)) {
+            float wholeRank = titleList.get(word) + (float) (bodyList.get(word) * 0.8);
+            indexList.add(new IndexRow(dbPage.getId(), lemmaIds.get(word), wholeRank,
+                    page.getPositions().encode(word)));
+            batch.add(dbPage.getId(), word, wholeRank);
+        }
+    }
+
+    private Set<String> wordsOf(PageLemmas page) {
+        Set<String> allTheWords = new HashSet<>(page.getTitleLemmas().size() + page.getBodyLemmas().size());
+        page.getTitleLemmas().forEach((word, count) -> allTheWords.add(word));
+        page.getBodyLemmas().forEach((word, count) -> allTheWords.add(word));
+        return allTheWords;
+    }
+
+    /**
+     * Убирает вклад страницы из индекса: уменьшает частоты её лемм, удаляет её строки индекса
+     * и леммы, которые больше не встречаются ни на одной странице сайта.
+     */
+    @Transactional
+    public void removePage(Site site, Page page) {
+        subtractPage(page);
+        lemmaRepository.deleteUnusedBySite(site.getId());
+    }
+
+    /**
+     * Убирает вклад страницы из индекса, но оставляет леммы с нулевой частотой: во время обхода
+     * их id хранятся в таблице лемм обхода. Такие леммы удаляет {@link #deleteUnusedLemmas}.
+     */
+    @Transactional
+    public void subtractPage(Page page) {
+        lemmaRepository.decrementFrequencyByPage(page.getId());
+        indexRepository.deleteByPage(page.getId());
+        InvertedIndex.Batch batch = invertedIndex.batch(page.getSiteId().getId());
+        batch.remove(page.getId());
+        batch.apply();
+    }
+
+    @Transactional
+    public void deleteUnusedLemmas(Site site) {
+        lemmaRepository.deleteUnusedBySite(site.getId());
+    }
+
+    /**
+     * Удаляет страницу вместе с её вкладом в индекс и с её копиями: без канонической страницы
+     * они не находятся поиском и будут заново загружены при следующем обходе.
+     */
+    @Transactional
+    public void deletePage(Site site, Page page) {
+        removePage(site, page);
+        pageRepository.deleteAliasesOf(page.getId());
+        pageRepository.deleteByPageId(page.getId());
+    }
+}
@@ -0,0 +1,14 @@
+package searchengine.parser;
+
+import lombok.Value;
+import searchengine.model.Page;
+import searchengine.morphology.TermCounter;
+import searchengine.morphology.TermPositions;
+
+@Value
+public class PageLemmas {
+    Page page;
+    TermCounter titleLemmas;
+    TermCounter bodyLemmas;
+    TermPositions positions;
+}
@@ -0,0 +1,78 @@
+package searchengine.parser;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничитель частоты запросов к хостам (token bucket по каждому хосту).
+ * Не блокирует потоки: {@link #reserve(String)} только резервирует момент,
+ * раньше которого запрос к хосту отправлять нельзя, а ожидание происходит в очереди обхода.
+ */
+@Slf4j
+@Component
+public class PolitenessScheduler {
+    private static final long DEFAULT_DELAY_MS = 150;
+
+    private final Map<String, HostBucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Задаёт интервал между запросами к хосту.
+     *
+     * @param host    имя хоста
+     * @param delayMs минимальный средний интервал между запросами, мс
+     * @param burst   сколько запросов можно отправить подряд после простоя
+     */
+    public void configure(String host, long delayMs, int burst) {
+        log.info("Crawl delay for " + host + " - " + delayMs + " ms, burst " + burst);
+        buckets.put(host, new HostBucket(TimeUnit.MILLISECONDS.toNanos(delayMs), Math.max(burst, 1)));
+    }
+
+    /**
+     * Резервирует ближайший свободный слот для запроса к хосту адреса.
+     *
+     * @param url адрес страницы
+     * @return момент по {@link System#nanoTime()}, начиная с которого запрос разрешён
+     */
+    public long reserve(String url) {
+        String host = hostOf(url);
+        HostBucket bucket = buckets.computeIfAbsent(host,
+                h -> new HostBucket(TimeUnit.MILLISECONDS.toNanos(DEFAULT_DELAY_MS), 1));
+        return bucket.reserve(System.nanoTime());
+    }
+
+    public static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? "" : host.toLowerCase();
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    private static class HostBucket {
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private long theoreticalArrival;
+        private boolean started;
+
+        HostBucket(long intervalNanos, int burst) {
+            this.intervalNanos = intervalNanos;
+            this.toleranceNanos = intervalNanos * (burst - 1);
+        }
+
+        synchronized long reserve(long now) {
+            if (!started || theoreticalArrival < now) {
+                theoreticalArrival = now;
+                started = true;
+            }
+            long allowedAt = Math.max(now, theoreticalArrival - toleranceNanos);
+            theoreticalArrival += intervalNanos;
+            return allowedAt;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package searchengine.parser;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Правила robots.txt, которые учитывает обход: Crawl-delay и адреса карт сайта.
+ */
+@Slf4j
+public class RobotsTxt {
+    private final long crawlDelayMs;
+    private final List<String> sitemaps;
+
+    RobotsTxt(long crawlDelayMs, List<String> sitemaps) {
+        this.crawlDelayMs = crawlDelayMs;
+        this.sitemaps = sitemaps;
+    }
+
+    public long getCrawlDelayMs() {
+        return crawlDelayMs;
+    }
+
+    /**
+     * Адреса из строк Sitemap; они не относятся к группам User-agent.
+     */
+    public List<String> getSitemaps() {
+        return sitemaps;
+    }
+
+    /**
+     * Загружает robots.txt сайта. Если файл недоступен, возвращает пустые правила.
+     *
+     * @param root      корневой адрес сайта со слешем на конце
+     * @param userAgent User-Agent обходчика
+     */
+    public static RobotsTxt fetch(String root, String userAgent, PageFetcher pageFetcher) {
+        try {
+            FetchResult result = pageFetcher.fetch(root + "robots.txt").get(30, TimeUnit.SECONDS);
+            if (result.getCode() == 200) {
+                return parse(new String(result.getBody(), StandardCharsets.UTF_8), userAgent);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.debug("Can't read robots.txt - " + root);
+        }
+        return new RobotsTxt(0, List.of());
+    }
+
+    static RobotsTxt parse(String content, String userAgent) {
+        String agent = userAgent.toLowerCase(Locale.ROOT);
+        boolean groupApplies = false;
+        boolean readingAgents = false;
+        long crawlDelayMs = 0;
+        List<String> sitemaps = new ArrayList<>();
+        for (String rawLine : content.split("\\r?\\n")) {
+            int comment = rawLine.indexOf('#');
+            String line = (comment >= 0 ? rawLine.substring(0, comment) : rawLine).trim();
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            if (key.equals("sitemap")) {
+                if (!value.isEmpty()) {
+                    sitemaps.add(value);
+                }
+                continue;
+            }
+            if (key.equals("user-agent")) {
+                String name = value.toLowerCase(Locale.ROOT);
+                boolean matches = name.equals("*") || (!name.isEmpty() && agent.contains(name));
+                groupApplies = readingAgents ? groupApplies || matches : matches;
+                readingAgents = true;
+                continue;
+            }
+            readingAgents = false;
+            if (groupApplies && key.equals("crawl-delay")) {
+                try {
+                    crawlDelayMs = Math.max(crawlDelayMs, (long) (Double.parseDouble(value) * 1000));
+                } catch (NumberFormatException e) {
+                    log.debug("Bad Crawl-delay value - " + value);
+                }
+            }
+        }
+        return new RobotsTxt(crawlDelayMs, sitemaps);
+    }
+}
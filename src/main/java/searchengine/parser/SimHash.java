@@ -0,0 +1,66 @@
+package searchengine.parser;
+
+/**
+ * 64-битный SimHash текста страницы (Charikar): у почти одинаковых текстов отпечатки
+ * отличаются в нескольких битах, поэтому близость страниц оценивается расстоянием Хэмминга.
+ * Признаки — слова текста в нижнем регистре, вес признака равен числу его повторений.
+ */
+public final class SimHash {
+    /**
+     * Отпечаток текста короче этого числа слов ненадёжен, и такие страницы не сравниваются.
+     */
+    static final int MIN_WORDS = 50;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private SimHash() {
+    }
+
+    /**
+     * @return отпечаток текста или 0, если слов слишком мало
+     */
+    public static long of(String text) {
+        int[] weights = new int[64];
+        int words = 0;
+        long hash = FNV_OFFSET;
+        boolean inWord = false;
+        for (int i = 0, length = text.length(); i <= length; i++) {
+            char c = i < length ? Character.toLowerCase(text.charAt(i)) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                hash = (hash ^ c) * FNV_PRIME;
+                inWord = true;
+            } else if (inWord) {
+                long feature = mix(hash);
+                for (int bit = 0; bit < 64; bit++) {
+                    weights[bit] += ((feature >>> bit) & 1) == 1 ? 1 : -1;
+                }
+                words++;
+                hash = FNV_OFFSET;
+                inWord = false;
+            }
+        }
+        if (words < MIN_WORDS) {
+            return 0;
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,132 @@
+package searchengine.parser;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+import searchengine.dto.statistics.PageStatistics;
+import searchengine.exception.IndexingException;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.model.Status;
+import searchengine.morphology.Morphology;
+import searchengine.morphology.TermCounter;
+import searchengine.morphology.TermPositions;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.storage.ContentStore;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Переиндексация одной страницы без обхода сайта: страница загружается, её леммы сравниваются
+ * с сохранёнными строками index_table, и меняются только частоты лемм, которые на странице
+ * появились или исчезли, и строки индекса этой страницы.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SinglePageIndexer {
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final SitesList sitesList;
+    private final Morphology morphology;
+    private final PageFetcher pageFetcher;
+    private final PageIndexer pageIndexer;
+    private final ContentStore contentStore;
+
+    /**
+     * Вызывается только через очередь заданий индексации, которая не даёт ему пересечься
+     * с обходом того же сайта.
+     *
+     * @param siteConfig сайт конфигурации, к которому относится адрес
+     * @param url        адрес страницы сайта
+     * @throws IndexingException если страницу не удалось загрузить
+     */
+    public void index(searchengine.config.Site siteConfig, String url) {
+        String siteUrl = siteConfig.getUrl();
+        String address = new UrlNormalizer(siteConfig.getStripParams()).normalize(url);
+        Site site = siteRepository.findFirstByUrlAndLiveTrue(siteUrl);
+        if (site == null) {
+            site = createSite(siteConfig);
+        }
+
+        PageStatistics page = new HtmlParser().parse(address, fetch(address));
+        String path = pathOf(address);
+        Page dbPage = pageRepository.findBySiteIdAndPath(site, path);
+        if (page == null) {
+            if (dbPage != null) {
+                pageIndexer.deletePage(site, dbPage);
+            }
+            log.info("Not an HTML page, removed from index - " + address);
+            return;
+        }
+        if (dbPage == null) {
+            dbPage = new Page();
+            dbPage.setSiteId(site);
+            dbPage.setPath(path);
+        }
+        TermCounter titleLemmas = new TermCounter();
+        TermCounter bodyLemmas = new TermCounter();
+        TermPositions positions = new TermPositions();
+        if (page.getCode() < 400) {
+            titleLemmas = morphology.countLemmas(page.getTitle(), positions, 0);
+            bodyLemmas = morphology.countLemmas(page.getBody(), positions, TermPositions.bodyOffset(page.getTitle()));
+        }
+        try (ContentStore.Pin pin = contentStore.pin()) {
+            dbPage.setCode(page.getCode());
+            dbPage.setContentRef(contentStore.write(page.getContent()));
+            dbPage.setTitle(page.getTitle());
+            dbPage.setTextRef(contentStore.write(page.getBody()));
+            dbPage.setEtag(page.getEtag());
+            dbPage.setLastModified(page.getLastModified());
+            dbPage.setContentHash(page.getContentHash());
+            dbPage.setFingerprint(page.getFingerprint() == 0 ? null : page.getFingerprint());
+            dbPage.setAliasOf(null);
+            pin.sync();
+            pageIndexer.updatePage(site, new PageLemmas(dbPage, titleLemmas, bodyLemmas, positions));
+        }
+        log.info("Page reindexed - " + address);
+    }
+
+    private FetchResult fetch(String address) {
+        try {
+            return pageFetcher.fetch(address, null).get(sitesList.getFetchTimeout(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IndexingException("Загрузка страницы прервана - " + address, e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IndexingException("Не удалось загрузить страницу - " + address, e);
+        }
+    }
+
+    /**
+     * Путь берётся из канонического адреса, а не отрезается длиной адреса сайта из конфигурации:
+     * тот может отличаться от канонического регистром хоста, портом или слешем в конце.
+     *
+     * @return путь страницы вместе с запросом, как его записывает обход сайта
+     */
+    private static String pathOf(String address) {
+        URI uri;
+        try {
+            uri = URI.create(address);
+        } catch (IllegalArgumentException e) {
+            throw new IndexingException("Некорректный адрес страницы - " + address, e);
+        }
+        String query = uri.getRawQuery();
+        return query == null ? uri.getRawPath() : uri.getRawPath() + "?" + query;
+    }
+
+    private Site createSite(searchengine.config.Site siteConfig) {
+        Site site = new Site();
+        site.setUrl(siteConfig.getUrl());
+        site.setName(siteConfig.getName());
+        site.setStatus(Status.INDEXED);
+        site.setStatusTime(LocalDateTime.now());
+        return siteRepository.save(site);
+    }
+}
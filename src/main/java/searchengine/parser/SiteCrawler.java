@@ -0,0 +1,73 @@
+package searchengine.parser;
+
+import lombok.extern.slf4j.Slf4j;
+import searchengine.dto.statistics.PageValidators;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Первый этап конвейера индексации: берёт адреса из {@link CrawlFrontier}, отправляет их в {@link PageFetcher}
+ * и не ждёт ответа. Полученные ответы кладутся в ограниченную очередь; если она заполнена,
+ * обработчик ответа ждёт, не освобождая слот хоста, и новые запросы к хосту не отправляются.
+ * Адрес считается обработанным только после разбора на следующем этапе.
+ */
+@Slf4j
+public class SiteCrawler implements Runnable {
+    private static final long OFFER_TIMEOUT_MS = 500;
+
+    private final CrawlFrontier frontier;
+    private final BlockingQueue<FetchedPage> fetchedQueue;
+    private final PageFetcher pageFetcher;
+    private final Map<String, PageValidators> knownPages;
+
+    public SiteCrawler(CrawlFrontier frontier, BlockingQueue<FetchedPage> fetchedQueue, PageFetcher pageFetcher,
+                       Map<String, PageValidators> knownPages) {
+        this.frontier = frontier;
+        this.fetchedQueue = fetchedQueue;
+        this.pageFetcher = pageFetcher;
+        this.knownPages = knownPages;
+    }
+
+    @Override
+    public void run() {
+        try {
+            CrawlUrl crawlUrl;
+            while ((crawlUrl = frontier.next()) != null) {
+                String address = crawlUrl.getUrl();
+                if (!pageFetcher.tryAcquire(address)) {
+                    frontier.retry(crawlUrl);
+                    continue;
+                }
+                CrawlUrl current = crawlUrl;
+                pageFetcher.fetch(address, knownPages.get(address)).whenComplete((result, error) -> {
+                    try {
+                        if (error != null) {
+                            log.debug("Can't get connected to the site" + address);
+                        }
+                        hand(new FetchedPage(current, error == null ? result : null));
+                    } finally {
+                        pageFetcher.release(address);
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            log.debug("Crawl stopped - " + frontier.getRoot());
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void hand(FetchedPage fetchedPage) {
+        try {
+            while (!frontier.isClosed()) {
+                if (fetchedQueue.offer(fetchedPage, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        frontier.complete(fetchedPage.getCrawlUrl());
+    }
+}
@@ -0,0 +1,127 @@
+package searchengine.parser;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+import searchengine.model.Site;
+import searchengine.model.Status;
+import searchengine.repositories.IndexRepository;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.storage.InvertedIndex;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Поколения индекса сайта. Полная переиндексация уже проиндексированного сайта строит новое поколение —
+ * отдельную строку site со своими страницами, леммами и индексом, — пока поиск идёт по живому.
+ * Готовое поколение становится живым одним UPDATE, а старое удаляется в фоне пачками по
+ * {@code drop-batch-size} строк прямыми DELETE, без загрузки сущностей и каскадов JPA.
+ */
+@Slf4j
+@Component
+public class SiteGenerations {
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+    private final IndexRepository indexRepository;
+    private final InvertedIndex invertedIndex;
+    private final int batchSize;
+    private final ExecutorService dropper = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "generation-dropper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SiteGenerations(SiteRepository siteRepository, PageRepository pageRepository,
+                           LemmaRepository lemmaRepository, IndexRepository indexRepository, InvertedIndex invertedIndex,
+                           SitesList sitesList) {
+        this.siteRepository = siteRepository;
+        this.pageRepository = pageRepository;
+        this.lemmaRepository = lemmaRepository;
+        this.indexRepository = indexRepository;
+        this.invertedIndex = invertedIndex;
+        this.batchSize = sitesList.getDropBatchSize();
+    }
+
+    /**
+     * Создаёт скрытое поколение сайта в статусе INDEXING.
+     */
+    public Site startShadow(String url, String name) {
+        Site site = new Site();
+        site.setUrl(url);
+        site.setName(name);
+        site.setStatus(Status.INDEXING);
+        site.setStatusTime(LocalDateTime.now());
+        site.setLive(false);
+        return siteRepository.save(site);
+    }
+
+    /**
+     * Делает поколение живым и ставит прежнее живое поколение в очередь на удаление.
+     */
+    public void promote(Site site) {
+        Site previous = siteRepository.findFirstByUrlAndLiveTrue(site.getUrl());
+        siteRepository.swapLive(site.getUrl(), site.getId());
+        site.setLive(true);
+        log.info("Site generation " + site.getId() + " is live - " + site.getUrl());
+        if (previous != null && !previous.getId().equals(site.getId())) {
+            drop(previous.getId());
+        }
+    }
+
+    /**
+     * Ставит в очередь на удаление все скрытые поколения сайта.
+     */
+    public void dropShadows(String url) {
+        dropShadows(url, null);
+    }
+
+    /**
+     * Ставит в очередь на удаление скрытые поколения сайта, кроме поколения, обход которого продолжается.
+     *
+     * @param keep id сохраняемого поколения или null
+     */
+    public void dropShadows(String url, Long keep) {
+        for (Site shadow : siteRepository.findByUrlAndLiveFalse(url)) {
+            if (!shadow.getId().equals(keep)) {
+                drop(shadow.getId());
+            }
+        }
+    }
+
+    /**
+     * Ставит поколение в очередь на удаление вместе с его страницами, леммами и индексом.
+     */
+    public void drop(long siteId) {
+        dropper.execute(() -> {
+            try {
+                long rows = 0;
+                int deleted;
+                while ((deleted = indexRepository.deleteBySite(siteId, batchSize)) > 0) {
+                    rows += deleted;
+                }
+                while ((deleted = lemmaRepository.deleteBySite(siteId, batchSize)) > 0) {
+                    rows += deleted;
+                }
+                while ((deleted = pageRepository.deleteBySite(siteId, batchSize)) > 0) {
+                    rows += deleted;
+                }
+                siteRepository.deleteBySiteId(siteId);
+                invertedIndex.drop(siteId);
+                log.info("Site generation " + siteId + " dropped: " + rows + " rows");
+            } catch (RuntimeException e) {
+                log.error("Can't drop site generation " + siteId, e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dropper.shutdown();
+    }
+}
@@ -3,19 +3,21 @@ package searchengine.parser;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import searchengine.config.SitesList;
+import searchengine.dto.statistics.PageFingerprint;
 import searchengine.dto.statistics.PageStatistics;
+import searchengine.dto.statistics.PageValidators;
 import searchengine.model.*;
-import searchengine.repositories.IndexRepository;
-import searchengine.repositories.LemmaRepository;
+import searchengine.morphology.Morphology;
 import searchengine.repositories.PageRepository;
-import searchengine.dto.statistics.StatisticsIndex;
-import searchengine.dto.statistics.StatisticsLemma;
 import searchengine.repositories.SiteRepository;
+import searchengine.storage.ContentStore;
 
+import java.nio.file.Path;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 import static searchengine.model.Status.*;
@@ -26,156 +28,359 @@ public class SiteIndexingTask implements Runnable {
 
     private final PageRepository pageRepository;
     private final SiteRepository siteRepository;
-    private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
-    private final LemmaParser lemmaParser;
-    private final IndexParser indexParser;
+    private final Morphology morphology;
     private final String url;
     private final SitesList sitesList;
+    private final PolitenessScheduler politenessScheduler;
+    private final PageFetcher pageFetcher;
+    private final PageIndexer pageIndexer;
+    private final ContentStore contentStore;
+    private final SiteGenerations siteGenerations;
+    private Site generation;
 
+    /**
+     * Первая индексация сайта пишет прямо в живое поколение. Переиндексация уже проиндексированного сайта
+     * строит новое поколение рядом с живым (см. {@link SiteGenerations}): поиск до самого переключения идёт
+     * по старому индексу, а при ошибке он остаётся как был. Дообход ({@code incremental-recrawl}, по
+     * умолчанию выключен) обновляет живое поколение постранично: так быстрее, но пока он идёт, поиск видит
+     * сайт наполовину обновлённым.
+     * <p>
+     * Обход, прерванный остановкой или перезапуском приложения, продолжается с контрольной точки, если она
+     * есть и её поколение сайта ещё существует, — живое или скрытое, — независимо от статуса сайта.
+     * Остальные скрытые поколения удаляются перед началом.
+     */
     @Override
     public void run() {
-        if (siteRepository.findByUrl(url) != null) {
-            log.info("Start deleting data from the site - " + url);
-            deleteDataFromSite();
+        String root = url + "/";
+        Path checkpointFile = CrawlCheckpoint.fileFor(sitesList.getCheckpointDir(), root);
+        CrawlCheckpoint resumeFrom = CrawlCheckpoint.load(checkpointFile, root);
+        Site resumed = resumeFrom == null ? null : siteRepository.findById(resumeFrom.getGeneration())
+                .filter(site -> site.getUrl().equals(url)).orElse(null);
+        if (resumed == null) {
+            resumeFrom = null;
         }
+        siteGenerations.dropShadows(url, resumed == null ? null : resumed.getId());
+        Site existingSite = siteRepository.findFirstByUrlAndLiveTrue(url);
+        CrawlCheckpoint checkpoint = resumeFrom != null ? resumeFrom : new CrawlCheckpoint(checkpointFile, root);
+        if (resumeFrom == null) {
+            checkpoint.delete();
+        }
+        boolean incremental = resumed != null || existingSite != null && isIncrementalRecrawl()
+                && pageRepository.countBySiteId(existingSite) > 0;
+        boolean shadow = resumed != null ? !resumed.isLive() : existingSite != null && !incremental;
+        LocalDateTime lastIndexed = incremental && !shadow && existingSite.getStatus() == INDEXED
+                ? existingSite.getStatusTime() : null;
         log.info("Indexing - " + url + " " + getName());
-        saveDateSite();
         try {
-            List<PageStatistics> pageStatistics = getPageList();
-            saveToBase(pageStatistics);
-            getLemmasPage();
-            indexingWords();
+            if (resumed != null) {
+                log.info("Resuming " + (shadow ? "the new generation" : "indexing") + " of the site - " + url);
+                markIndexing(resumed);
+                generation = resumed;
+            } else if (incremental) {
+                markIndexing(existingSite);
+                generation = existingSite;
+            } else if (shadow) {
+                log.info("Building a new generation of the site - " + url);
+                generation = siteGenerations.startShadow(url, getName());
+            } else {
+                generation = saveDateSite();
+            }
+            checkpoint.setGeneration(generation.getId());
+            indexSite(incremental, lastIndexed, checkpoint, resumeFrom != null);
+            if (shadow) {
+                siteGenerations.promote(generation);
+            }
         } catch (InterruptedException e) {
             log.error("Indexing stopped - " + url);
-            errorSite();
+            errorSite("Индексация остановлена", lastIndexed);
+        } catch (RuntimeException e) {
+            log.error("Indexing failed - " + url, e);
+            errorSite(e.getMessage(), lastIndexed);
         }
     }
 
-    private void deleteDataFromSite() {
-        Site dbSite = siteRepository.findByUrl(url);
-        dbSite.setStatus(INDEXING);
-        dbSite.setName(getName());
-        dbSite.setStatusTime(LocalDateTime.now());
-        siteRepository.save(dbSite);
-        siteRepository.flush();
-        siteRepository.delete(dbSite);
+    private String getName() {
+        searchengine.config.Site siteConfig = getSiteConfig();
+        return siteConfig == null ? "" : siteConfig.getName();
     }
 
-    private String getName() {
+    private boolean isIncrementalRecrawl() {
+        searchengine.config.Site siteConfig = getSiteConfig();
+        return siteConfig != null && siteConfig.isIncrementalRecrawl();
+    }
+
+    private searchengine.config.Site getSiteConfig() {
         List<searchengine.config.Site> sitesList_2 = sitesList.getSites();
         for (searchengine.config.Site sites : sitesList_2) {
             if (sites.getUrl().equals(url)) {
-                return sites.getName();
+                return sites;
             }
         }
-        return "";
+        return null;
     }
 
-    private void saveDateSite() {
+    private Site saveDateSite() {
         Site dbSite = new Site();
         dbSite.setUrl(url);
         dbSite.setName(getName());
         dbSite.setStatus(Status.INDEXING);
         dbSite.setStatusTime(LocalDateTime.now());
         siteRepository.flush();
-        siteRepository.save(dbSite);
+        return siteRepository.save(dbSite);
     }
 
-    private List<PageStatistics> getPageList() throws InterruptedException {
-        if (!Thread.interrupted()) {
-            String urlFormat = url + "/";
-            List<PageStatistics> statisticsPageVector = new Vector<>();
-            List<String> urlList = new Vector<>();
-            ForkJoinPool forkJoinPool = new ForkJoinPool(10);
-            List<PageStatistics> pages = forkJoinPool.invoke(new HtmlParser(urlFormat, statisticsPageVector, urlList));
-            return new CopyOnWriteArrayList<>(pages);
-        } else throw new InterruptedException();
-    }
-    private long generateRandomId() {
-        return (long) (Math.random() * 10000000);
-    }
-
-    private void saveToBase(List<PageStatistics> pages) throws InterruptedException {
-        if (!Thread.interrupted()) {
-            List<Page> dbPages = new CopyOnWriteArrayList<>();
-            Site site = siteRepository.findByUrl(url);
-
-            for (PageStatistics page : pages) {
-                int first = page.getUrl().indexOf(url) + url.length();
-                String path = page.getUrl().substring(first);
-                Page dbPage = new Page();
-                dbPage.setId(generateRandomId());
-                dbPage.setSiteId(site);
-                dbPage.setPath(path);
-                dbPage.setCode(page.getCode());
-                dbPage.setContent(page.getContent());
-                dbPages.add(dbPage);
-            }
-            pageRepository.flush();
-            pageRepository.saveAll(dbPages);
-        } else {
+    private void markIndexing(Site site) {
+        site.setStatus(INDEXING);
+        site.setStatusTime(LocalDateTime.now());
+        siteRepository.save(site);
+    }
+
+    /**
+     * Обходит сайт и индексирует страницы по мере загрузки. При повторном обходе известные страницы
+     * запрашиваются условно: неизменённые (304 или тот же хэш) пропускаются целиком, у изменённых
+     * заменяется только их собственный вклад в леммы и индекс, исчезнувшие с сайта страницы удаляются
+     * (как и дубликаты, адреса которых совпали после приведения к каноническому виду).
+     * Если у сайта есть карта, её адреса засеваются в очередь сразу, а известные страницы с lastmod
+     * раньше прошлой индексации не загружаются вовсе.
+     *
+     * Состояние обхода периодически сохраняется в контрольную точку; прерванный обход продолжается с неё,
+     * и тогда страницы, не встреченные после возобновления, не удаляются: они могли быть пройдены до остановки.
+     *
+     * @param lastIndexed время окончания прошлой успешной индексации или null
+     * @param resumed     обход продолжается с контрольной точки
+     */
+    private void indexSite(boolean incremental, LocalDateTime lastIndexed, CrawlCheckpoint checkpoint,
+                           boolean resumed) throws InterruptedException {
+        if (Thread.interrupted()) {
             throw new InterruptedException();
         }
+        Site site = currentGeneration();
+        searchengine.config.Site siteConfig = getSiteConfig();
+        if (siteConfig == null) {
+            siteConfig = new searchengine.config.Site();
+        }
+        UrlNormalizer normalizer = new UrlNormalizer(siteConfig.getStripParams());
+        Map<String, PageValidators> knownPages = new HashMap<>();
+        List<String> knownPaths = new ArrayList<>();
+        if (incremental) {
+            for (PageValidators validators : pageRepository.findValidatorsBySite(site)) {
+                knownPages.putIfAbsent(normalizer.normalize(url + validators.getPath()), validators);
+                knownPaths.add(validators.getPath());
+            }
+        }
+
+        String urlFormat = url + "/";
+        RobotsTxt robotsTxt = RobotsTxt.fetch(urlFormat, sitesList.getUserAgent(), pageFetcher);
+        configurePoliteness(urlFormat, siteConfig, robotsTxt);
+        CrawlFrontier frontier = new CrawlFrontier(urlFormat, siteConfig.getMaxPages(), siteConfig.getMaxDepth(),
+                politenessScheduler, normalizer);
+        Set<String> seenPaths = ConcurrentHashMap.newKeySet();
+        if (resumed) {
+            checkpoint.restore(frontier);
+        }
+        frontier.offer(urlFormat, 0);
+        if (siteConfig.isUseSitemap()) {
+            seedFromSitemap(frontier, normalizer, urlFormat, siteConfig, robotsTxt, knownPages, lastIndexed, seenPaths);
+        }
+        for (String knownUrl : knownPages.keySet()) {
+            frontier.offer(knownUrl, 1);
+        }
+
+        NearDuplicateIndex duplicates = null;
+        if (siteConfig.isDetectNearDuplicates()) {
+            duplicates = new NearDuplicateIndex();
+            if (incremental) {
+                for (PageFingerprint page : pageRepository.findFingerprintsBySite(site)) {
+                    duplicates.add(normalizer.normalize(url + page.getPath()), page.getFingerprint());
+                }
+            }
+        }
+
+        int[] changed = new int[1];
+        List<PageAlias> pendingAliases = new ArrayList<>();
+        Map<String, Long> lemmaIds = new HashMap<>();
+        new IndexingPipeline(frontier, pageFetcher, morphology, knownPages, duplicates, checkpoint, sitesList,
+                batch -> changed[0] += savePages(site, knownPages, seenPaths, pendingAliases, lemmaIds, batch)).run();
+        saveAliases(site, pendingAliases, true);
+        pageIndexer.deleteUnusedLemmas(site);
+
+        int removed = 0;
+        for (String knownPath : resumed ? List.<String>of() : knownPaths) {
+            if (!seenPaths.contains(knownPath)) {
+                Page dbPage = pageRepository.findBySiteIdAndPath(site, knownPath);
+                if (dbPage != null) {
+                    pageIndexer.deletePage(site, dbPage);
+                    removed++;
+                }
+            }
+        }
+        log.info("Done indexing - " + url + ": " + changed[0] + " pages indexed, " + removed + " removed, "
+                + (seenPaths.size() - changed[0]) + " unchanged");
+        Site dbSite = currentGeneration();
+        dbSite.setStatusTime(LocalDateTime.now());
+        dbSite.setStatus(Status.INDEXED);
+        siteRepository.save(dbSite);
+        checkpoint.delete();
     }
 
-    private void errorSite() {
-        Site sitePage = new Site();
-        sitePage.setLastError("Indexing stopped");
-        sitePage.setStatus(Status.FAILED);
-        sitePage.setStatusTime(LocalDateTime.now());
-        siteRepository.save(sitePage);
+    private void configurePoliteness(String root, searchengine.config.Site siteConfig, RobotsTxt robotsTxt) {
+        long delay = siteConfig.getCrawlDelay();
+        if (siteConfig.isRespectRobotsCrawlDelay()) {
+            delay = Math.max(delay, robotsTxt.getCrawlDelayMs());
+        }
+        politenessScheduler.configure(PolitenessScheduler.hostOf(root), delay, siteConfig.getCrawlBurst());
     }
 
-    private void getLemmasPage() {
-        if (!Thread.interrupted()) {
-            Site siteId = siteRepository.findByUrl(url);
-            siteId.setStatusTime(LocalDateTime.now());
-            lemmaParser.run(siteId);
-            List<StatisticsLemma> statisticsLemmaList = lemmaParser.getLemmaDtoList();
-            List<Lemma> lemmaList = new CopyOnWriteArrayList<>();
-            for (StatisticsLemma statisticsLemma : statisticsLemmaList) {
-                Lemma lemma = new Lemma();
-                lemma.setId(generateRandomId());
-                lemma.setLemma(statisticsLemma.getLemma());
-                lemma.setFrequency(statisticsLemma.getFrequency());
-                lemma.setSitePageId(siteId);
-                lemmaList.add(lemma);
+    private void seedFromSitemap(CrawlFrontier frontier, UrlNormalizer normalizer, String root, searchengine.config.Site siteConfig,
+                                 RobotsTxt robotsTxt, Map<String, PageValidators> knownPages,
+                                 LocalDateTime lastIndexed, Set<String> seenPaths) {
+        List<String> sitemaps = robotsTxt.getSitemaps().isEmpty() ? List.of(root + "sitemap.xml") : robotsTxt.getSitemaps();
+        Instant since = lastIndexed == null ? null : lastIndexed.atZone(ZoneId.systemDefault()).toInstant();
+        int skipped = 0;
+        for (SitemapEntry entry : new SitemapReader(pageFetcher).read(sitemaps, root, siteConfig.getMaxPages())) {
+            PageValidators known = knownPages.get(normalizer.normalize(entry.getUrl()));
+            if (known != null && since != null && entry.getLastModified() != null
+                    && entry.getLastModified().isBefore(since)) {
+                if (frontier.skip(entry.getUrl())) {
+                    seenPaths.add(known.getPath());
+                    skipped++;
+                }
+                continue;
             }
-            lemmaRepository.flush();
-            lemmaRepository.saveAll(lemmaList);
-        } else {
-            throw new RuntimeException();
-        }
-    }
-
-    private void indexingWords() throws InterruptedException {
-        if (!Thread.interrupted()) {
-            Site dbSite = siteRepository.findByUrl(url);
-            indexParser.run(dbSite);
-            List<StatisticsIndex> statisticsIndexList = new CopyOnWriteArrayList<>(indexParser.getIndexList());
-            List<Index> indexList = new CopyOnWriteArrayList<>();
-            dbSite.setStatusTime(LocalDateTime.now());
-            for (StatisticsIndex statisticsIndex : statisticsIndexList) {
-                Index index = new Index();
-                Page page = pageRepository.getById(statisticsIndex.getPageID());
-                Lemma lemma = lemmaRepository.getById(statisticsIndex.getLemmaID());
-                index.setId(generateRandomId());
-                index.setPageId(page);
-                index.setLemma(lemma);
-                index.setRank(statisticsIndex.getRank());
-                indexList.add(index);
+            frontier.offer(entry.getUrl(), 1);
+        }
+        if (skipped > 0) {
+            log.info("Sitemap - " + url + ": " + skipped + " pages not modified since last indexing");
+        }
+    }
+
+    /**
+     * Записывает пачку страниц с конвейера. Копии записываются после своих канонических страниц;
+     * если каноническая страница ещё в конвейере, копия откладывается в {@code pendingAliases}.
+     * Вклад изменённых страниц вычитается в той же транзакции, что и запись пачки, и без удаления лемм,
+     * чтобы id в {@code lemmaIds} оставались действительными до конца обхода.
+     *
+     * @param lemmaIds id лемм сайта, известные с прошлых пачек
+     * @return число новых или изменённых страниц в пачке
+     */
+    private int savePages(Site site, Map<String, PageValidators> knownPages, Set<String> seenPaths,
+                          List<PageAlias> pendingAliases, Map<String, Long> lemmaIds, List<LemmatizedPage> batch) {
+        List<PageLemmas> pages = new ArrayList<>();
+        List<Page> replaced = new ArrayList<>();
+        List<PageAlias> aliases = new ArrayList<>(pendingAliases);
+        pendingAliases.clear();
+        int changed = 0;
+        try (ContentStore.Pin pin = contentStore.pin()) {
+            for (LemmatizedPage lemmatizedPage : batch) {
+                PageStatistics page = lemmatizedPage.getPage();
+                String path = pathOf(knownPages, page.getUrl());
+                PageValidators known = knownPages.get(page.getUrl());
+                seenPaths.add(path);
+                if (page.isUnchanged()) {
+                    continue;
+                }
+                Page dbPage = known != null ? pageRepository.findBySiteIdAndPath(site, path) : null;
+                if (dbPage != null) {
+                    replaced.add(dbPage);
+                } else {
+                    dbPage = new Page();
+                    dbPage.setSiteId(site);
+                    dbPage.setPath(path);
+                }
+                changed++;
+                if (lemmatizedPage.getAliasOf() != null) {
+                    fillPage(dbPage, page, false);
+                    aliases.add(new PageAlias(dbPage, pathOf(knownPages, lemmatizedPage.getAliasOf())));
+                    continue;
+                }
+                fillPage(dbPage, page, true);
+                pages.add(new PageLemmas(dbPage, lemmatizedPage.getTitleLemmas(), lemmatizedPage.getBodyLemmas(),
+                        lemmatizedPage.getPositions()));
+            }
+            pin.sync();
+            if (!pages.isEmpty() || !replaced.isEmpty()) {
+                pageIndexer.indexPages(site, replaced, pages, lemmaIds);
             }
-            indexRepository.flush();
-            indexRepository.saveAll(indexList);
-            log.info("Done indexing - " + url);
-            dbSite.setStatusTime(LocalDateTime.now());
-            dbSite.setStatus(Status.INDEXED);
-            siteRepository.save(dbSite);
+        }
+        pendingAliases.addAll(saveAliases(site, aliases, false));
+        return changed;
+    }
+
+    /**
+     * Записывает копии, чьи канонические страницы уже сохранены.
+     *
+     * @param last копии, канонические страницы которых так и не сохранились, удаляются,
+     *             чтобы при следующем обходе загрузить их заново
+     * @return копии, которые пока не удалось записать
+     */
+    private List<PageAlias> saveAliases(Site site, List<PageAlias> aliases, boolean last) {
+        List<PageAlias> pending = new ArrayList<>();
+        for (PageAlias alias : aliases) {
+            Page canonical = pageRepository.findBySiteIdAndPath(site, alias.getCanonicalPath());
+            Page dbPage = alias.getPage();
+            if (canonical != null && canonical.getAliasOf() == null) {
+                dbPage.setAliasOf(canonical.getId());
+                pageRepository.save(dbPage);
+            } else if (!last) {
+                pending.add(alias);
+            } else if (dbPage.getId() != null) {
+                pageIndexer.deletePage(site, dbPage);
+            }
+        }
+        return pending;
+    }
+
+    private String pathOf(Map<String, PageValidators> knownPages, String pageUrl) {
+        PageValidators known = knownPages.get(pageUrl);
+        return known != null ? known.getPath() : getPath(pageUrl);
+    }
+
+    private String getPath(String pageUrl) {
+        int first = pageUrl.indexOf(url) + url.length();
+        return pageUrl.substring(first);
+    }
+
+    /**
+     * @param withContent false для копий: их HTML и текст не хранятся
+     */
+    private void fillPage(Page dbPage, PageStatistics page, boolean withContent) {
+        dbPage.setCode(page.getCode());
+        dbPage.setContentRef(withContent ? contentStore.write(page.getContent()) : null);
+        dbPage.setTitle(withContent ? page.getTitle() : "");
+        dbPage.setTextRef(withContent ? contentStore.write(page.getBody()) : null);
+        dbPage.setEtag(page.getEtag());
+        dbPage.setLastModified(page.getLastModified());
+        dbPage.setContentHash(page.getContentHash());
+        dbPage.setFingerprint(page.getFingerprint() == 0 ? null : page.getFingerprint());
+        dbPage.setAliasOf(null);
+    }
+
+    private Site currentGeneration() {
+        return siteRepository.findById(generation.getId()).orElse(null);
+    }
+
+    /**
+     * Записывает ошибку обхода. Дообход проиндексированного сайта идёт по живому поколению, и его
+     * индекс остаётся целым: изменённые страницы заменяются в тех же транзакциях, что и их леммы,
+     * а исчезнувшие удаляются только в конце обхода. Такой сайт остаётся в статусе INDEXED с прежним
+     * временем индексации, чтобы следующий дообход не пропустил страницы, до которых не дошёл этот.
+     *
+     * @param lastIndexed время прошлой индексации, если обход был дообходом проиндексированного сайта, иначе null
+     */
+    private void errorSite(String error, LocalDateTime lastIndexed) {
+        Site sitePage = generation == null ? null : currentGeneration();
+        if (sitePage == null) {
+            return;
+        }
+        sitePage.setLastError(error);
+        if (lastIndexed != null && sitePage.isLive()) {
+            sitePage.setStatus(INDEXED);
+            sitePage.setStatusTime(lastIndexed);
         } else {
-            throw new InterruptedException();
+            sitePage.setStatus(Status.FAILED);
+            sitePage.setStatusTime(LocalDateTime.now());
         }
+        siteRepository.save(sitePage);
     }
 
 }
-
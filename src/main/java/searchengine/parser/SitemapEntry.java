@@ -0,0 +1,14 @@
+package searchengine.parser;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+@Value
+public class SitemapEntry {
+    String url;
+    /**
+     * Значение lastmod или null, если оно не указано или не разобрано.
+     */
+    Instant lastModified;
+}
@@ -0,0 +1,123 @@
+package searchengine.parser;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Читает карты сайта (sitemap.xml): обычные файлы, индексы карт и сжатые gzip-файлы.
+ * Возвращает адреса страниц сайта вместе с датой lastmod, чтобы засеять ими очередь обхода
+ * одним проходом и не загружать повторно страницы, которые не менялись с прошлой индексации.
+ */
+@Slf4j
+public class SitemapReader {
+    private static final int MAX_SITEMAPS = 50;
+    private static final int MAX_SITEMAP_BYTES = 50 * 1024 * 1024;
+    private static final long FETCH_TIMEOUT_SECONDS = 30;
+
+    private final PageFetcher pageFetcher;
+
+    public SitemapReader(PageFetcher pageFetcher) {
+        this.pageFetcher = pageFetcher;
+    }
+
+    /**
+     * Обходит карты сайта, начиная с указанных адресов (из robots.txt или {@code /sitemap.xml}).
+     *
+     * @param sitemaps   адреса карт сайта
+     * @param root       корневой адрес сайта; адреса вне сайта пропускаются
+     * @param maxEntries наибольшее число возвращаемых адресов
+     */
+    public List<SitemapEntry> read(Collection<String> sitemaps, String root, int maxEntries) {
+        Deque<String> queue = new ArrayDeque<>(sitemaps);
+        Set<String> seenSitemaps = new HashSet<>();
+        Map<String, SitemapEntry> entries = new LinkedHashMap<>();
+        while (!queue.isEmpty() && seenSitemaps.size() < MAX_SITEMAPS && entries.size() < maxEntries) {
+            String sitemap = queue.poll();
+            if (!seenSitemaps.add(sitemap)) {
+                continue;
+            }
+            Document document = load(sitemap);
+            if (document == null) {
+                continue;
+            }
+            for (Element loc : document.select("sitemapindex > sitemap > loc")) {
+                queue.add(loc.text().trim());
+            }
+            for (Element url : document.select("urlset > url")) {
+                Element loc = url.selectFirst("loc");
+                if (loc == null) {
+                    continue;
+                }
+                String address = loc.text().trim();
+                if (!address.startsWith(root) || entries.size() >= maxEntries) {
+                    continue;
+                }
+                Element lastmod = url.selectFirst("lastmod");
+                entries.putIfAbsent(address, new SitemapEntry(address, lastmod == null ? null : parseLastmod(lastmod.text())));
+            }
+        }
+        log.info("Sitemap - " + root + ": " + entries.size() + " urls from " + seenSitemaps.size() + " files");
+        return new ArrayList<>(entries.values());
+    }
+
+    private Document load(String sitemap) {
+        try {
+            FetchResult result = pageFetcher.fetch(sitemap).get(FETCH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (result.getCode() != 200 || result.getBody().length == 0) {
+                return null;
+            }
+            try (InputStream in = open(result.getBody())) {
+                return Jsoup.parse(in, "UTF-8", sitemap, Parser.xmlParser());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.debug("Can't read sitemap - " + sitemap);
+        }
+        return null;
+    }
+
+    /**
+     * Открывает тело ответа, распаковывая gzip по сигнатуре: сервер может отдавать {@code .xml.gz}
+     * с любым Content-Type. Объём распакованного файла ограничен, как того требует протокол sitemaps.
+     */
+    private static InputStream open(byte[] body) throws IOException {
+        if (body.length > 2 && (body[0] & 0xff) == 0x1f && (body[1] & 0xff) == 0x8b) {
+            try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                return new ByteArrayInputStream(gzip.readNBytes(MAX_SITEMAP_BYTES));
+            }
+        }
+        return new ByteArrayInputStream(body);
+    }
+
+    /**
+     * Разбирает дату в формате W3C Datetime: полную с часовым поясом или только дату.
+     */
+    static Instant parseLastmod(String value) {
+        String text = value.trim();
+        try {
+            return OffsetDateTime.parse(text).toInstant();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDate.parse(text).atStartOfDay(ZoneOffset.UTC).toInstant();
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+}
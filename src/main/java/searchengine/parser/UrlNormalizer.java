@@ -0,0 +1,114 @@
+package searchengine.parser;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Приводит адрес страницы к каноническому виду, чтобы одна и та же страница не загружалась дважды:
+ * схема и хост в нижнем регистре, без порта по умолчанию, фрагмента и слеша в конце пути,
+ * параметры запроса отсортированы, а служебные (метки рекламы, идентификаторы сессий) удалены.
+ */
+public class UrlNormalizer {
+    private static final Pattern PERCENT_ESCAPE = Pattern.compile("%[0-9a-fA-F]{2}");
+
+    private final List<String> strippedParams = new ArrayList<>();
+    private final List<String> strippedPrefixes = new ArrayList<>();
+
+    /**
+     * @param stripParams имена удаляемых параметров; {@code *} в конце задаёт префикс, например {@code utm_*}
+     */
+    public UrlNormalizer(Collection<String> stripParams) {
+        for (String param : stripParams) {
+            String name = param.trim().toLowerCase(Locale.ROOT);
+            if (name.endsWith("*")) {
+                strippedPrefixes.add(name.substring(0, name.length() - 1));
+            } else if (!name.isEmpty()) {
+                strippedParams.add(name);
+            }
+        }
+    }
+
+    /**
+     * @return канонический адрес; адрес, который не удалось разобрать, возвращается без фрагмента как есть
+     */
+    public String normalize(String url) {
+        URI uri;
+        try {
+            uri = new URI(url.trim()).normalize();
+        } catch (URISyntaxException e) {
+            int fragment = url.indexOf('#');
+            return fragment >= 0 ? url.substring(0, fragment) : url;
+        }
+        String scheme = uri.getScheme();
+        String host = uri.getHost();
+        if (scheme == null || host == null) {
+            return url;
+        }
+        scheme = scheme.toLowerCase(Locale.ROOT);
+        StringBuilder result = new StringBuilder(url.length());
+        result.append(scheme).append("://").append(host.toLowerCase(Locale.ROOT));
+        int port = uri.getPort();
+        if (port != -1 && !(port == 80 && scheme.equals("http")) && !(port == 443 && scheme.equals("https"))) {
+            result.append(':').append(port);
+        }
+        String path = uri.getRawPath();
+        if (path == null || path.isEmpty()) {
+            path = "/";
+        } else if (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        result.append(upperCaseEscapes(path));
+        String query = normalizeQuery(uri.getRawQuery());
+        if (!query.isEmpty()) {
+            result.append('?').append(query);
+        }
+        return result.toString();
+    }
+
+    private String normalizeQuery(String query) {
+        if (query == null || query.isEmpty()) {
+            return "";
+        }
+        List<String> params = new ArrayList<>();
+        for (String param : query.split("&")) {
+            if (!param.isEmpty() && !isStripped(param)) {
+                params.add(upperCaseEscapes(param));
+            }
+        }
+        params.sort(null);
+        return String.join("&", params);
+    }
+
+    private boolean isStripped(String param) {
+        int eq = param.indexOf('=');
+        String name = (eq >= 0 ? param.substring(0, eq) : param).toLowerCase(Locale.ROOT);
+        if (strippedParams.contains(name)) {
+            return true;
+        }
+        for (String prefix : strippedPrefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String upperCaseEscapes(String text) {
+        if (text.indexOf('%') < 0) {
+            return text;
+        }
+        Matcher matcher = PERCENT_ESCAPE.matcher(text);
+        StringBuilder result = new StringBuilder(text.length());
+        while (matcher.find()) {
+            matcher.appendReplacement(result, matcher.group().toUpperCase(Locale.ROOT));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+}
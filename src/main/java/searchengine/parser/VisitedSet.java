@@ -0,0 +1,150 @@
+package searchengine.parser;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Множество просмотренных адресов с памятью, не зависящей от длины адресов.
+ * Сначала адрес проверяется фильтром Блума: отрицательный ответ точен, и новый адрес добавляется
+ * без поиска. Положительный ответ может быть ложным, поэтому он перепроверяется по точному множеству
+ * 64-битных отпечатков адресов. На адрес уходит не больше 40 байт вместо нескольких сотен байт
+ * у строки в {@code ConcurrentHashMap}; вероятность совпадения отпечатков двух разных адресов
+ * на миллионах страниц пренебрежимо мала.
+ */
+public class VisitedSet {
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long[] bloom;
+    private final int bloomBits;
+    private final int hashCount;
+    private long[] fingerprints;
+    private int size;
+
+    /**
+     * @param expectedSize ожидаемое число адресов; при превышении растёт только точное множество
+     */
+    public VisitedSet(int expectedSize) {
+        int expected = Math.max(expectedSize, 1024);
+        long bits = (long) Math.ceil(-expected * Math.log(FALSE_POSITIVE_RATE) / (Math.log(2) * Math.log(2)));
+        this.bloomBits = (int) Math.min(bits, Integer.MAX_VALUE - 63);
+        this.bloom = new long[(bloomBits + 63) / 64];
+        this.hashCount = Math.max(1, (int) Math.round((double) bloomBits / expected * Math.log(2)));
+        this.fingerprints = new long[Integer.highestOneBit(expected * 2 - 1) << 1];
+    }
+
+    /**
+     * @return true, если адреса ещё не было в множестве
+     */
+    public synchronized boolean add(String url) {
+        long fingerprint = fingerprint(url);
+        if (mightContain(fingerprint) && containsFingerprint(fingerprint)) {
+            return false;
+        }
+        setBloomBits(fingerprint);
+        insertFingerprint(fingerprint);
+        return true;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return отпечатки всех адресов множества, для сохранения в контрольной точке обхода
+     */
+    public synchronized long[] fingerprints() {
+        long[] result = new long[size];
+        int i = 0;
+        for (long fingerprint : fingerprints) {
+            if (fingerprint != 0) {
+                result[i++] = fingerprint;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Добавляет отпечатки, сохранённые методом {@link #fingerprints()}.
+     */
+    public synchronized void restore(long[] saved) {
+        for (long fingerprint : saved) {
+            if (!mightContain(fingerprint) || !containsFingerprint(fingerprint)) {
+                setBloomBits(fingerprint);
+                insertFingerprint(fingerprint);
+            }
+        }
+    }
+
+    private boolean mightContain(long fingerprint) {
+        int h1 = (int) fingerprint;
+        int h2 = (int) (fingerprint >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bloomBits);
+            if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setBloomBits(long fingerprint) {
+        int h1 = (int) fingerprint;
+        int h2 = (int) (fingerprint >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bloomBits);
+            bloom[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private boolean containsFingerprint(long fingerprint) {
+        int mask = fingerprints.length - 1;
+        for (int slot = (int) fingerprint & mask; fingerprints[slot] != 0; slot = (slot + 1) & mask) {
+            if (fingerprints[slot] == fingerprint) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void insertFingerprint(long fingerprint) {
+        if ((size + 1) * 2 > fingerprints.length) {
+            long[] old = fingerprints;
+            fingerprints = new long[old.length * 2];
+            for (long value : old) {
+                if (value != 0) {
+                    place(value);
+                }
+            }
+        }
+        place(fingerprint);
+        size++;
+    }
+
+    private void place(long fingerprint) {
+        int mask = fingerprints.length - 1;
+        int slot = (int) fingerprint & mask;
+        while (fingerprints[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        fingerprints[slot] = fingerprint;
+    }
+
+    /**
+     * FNV-1a по байтам UTF-8 с перемешиванием из MurmurHash3, чтобы младшие биты были равномерными.
+     * Ноль зарезервирован под пустую ячейку таблицы.
+     */
+    private static long fingerprint(String url) {
+        long hash = FNV_OFFSET;
+        for (byte b : url.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+}
@@ -0,0 +1,104 @@
+package searchengine.repositories;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import searchengine.config.SitesList;
+import searchengine.dto.statistics.IndexRow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Пакетная вставка строк lemma и index_table через JDBC. Строки уходят многострочными INSERT
+ * по {@code bulk-batch-size} строк, id берутся блоками из {@link IdAllocator}, а не из AUTO_INCREMENT,
+ * поэтому Hibernate не нужен ни для вставки, ни для получения id. Работает в текущей транзакции.
+ */
+@Slf4j
+@Repository
+public class BulkWriter {
+    private static final String LEMMA_TABLE = "lemma";
+    private static final String INDEX_TABLE = "index_table";
+    private static final String INSERT_LEMMAS = "INSERT INTO lemma (id, site_id, lemma, frequency) VALUES ";
+    private static final String LEMMA_VALUES = "(?, ?, ?, ?)";
+    private static final String INSERT_INDEX = "INSERT INTO index_table (id, page_id, lemma_id, my_rank, positions) VALUES ";
+    private static final String INDEX_VALUES = "(?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IdAllocator idAllocator;
+    private final int batchSize;
+
+    public BulkWriter(JdbcTemplate jdbcTemplate, IdAllocator idAllocator, SitesList sitesList) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.idAllocator = idAllocator;
+        this.batchSize = Math.max(1, sitesList.getBulkBatchSize());
+    }
+
+    /**
+     * Вставляет новые леммы сайта.
+     *
+     * @param lemmas леммы и их частоты
+     * @return id вставленных лемм
+     */
+    public Map<String, Long> insertLemmas(long siteId, Map<String, Integer> lemmas) {
+        Map<String, Long> ids = new HashMap<>();
+        List<Object> args = new ArrayList<>();
+        int rows = 0;
+        for (Map.Entry<String, Integer> lemma : lemmas.entrySet()) {
+            long id = idAllocator.next(LEMMA_TABLE);
+            ids.put(lemma.getKey(), id);
+            args.add(id);
+            args.add(siteId);
+            args.add(lemma.getKey());
+            args.add(lemma.getValue());
+            if (++rows == batchSize) {
+                insert(INSERT_LEMMAS, LEMMA_VALUES, rows, args);
+                rows = 0;
+            }
+        }
+        insert(INSERT_LEMMAS, LEMMA_VALUES, rows, args);
+        return ids;
+    }
+
+    /**
+     * Вставляет лемму сайта с частотой 1 или увеличивает частоту существующей.
+     */
+    public void upsertIncrement(long siteId, String lemma) {
+        jdbcTemplate.update("INSERT INTO lemma (id, site_id, lemma, frequency) VALUES (?, ?, ?, 1) "
+                + "ON DUPLICATE KEY UPDATE frequency = frequency + 1", idAllocator.next(LEMMA_TABLE), siteId, lemma);
+    }
+
+    public void insertIndexRows(List<IndexRow> indexRows) {
+        List<Object> args = new ArrayList<>();
+        int rows = 0;
+        for (IndexRow row : indexRows) {
+            args.add(idAllocator.next(INDEX_TABLE));
+            args.add(row.getPageId());
+            args.add(row.getLemmaId());
+            args.add(row.getRank());
+            args.add(row.getPositions());
+            if (++rows == batchSize) {
+                insert(INSERT_INDEX, INDEX_VALUES, rows, args);
+                rows = 0;
+            }
+        }
+        insert(INSERT_INDEX, INDEX_VALUES, rows, args);
+    }
+
+    private void insert(String insert, String values, int rows, List<Object> args) {
+        if (rows == 0) {
+            return;
+        }
+        StringBuilder sql = new StringBuilder(insert.length() + rows * (values.length() + 2)).append(insert);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(values);
+        }
+        jdbcTemplate.update(sql.toString(), args.toArray());
+        args.clear();
+    }
+}
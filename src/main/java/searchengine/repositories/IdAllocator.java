@@ -0,0 +1,74 @@
+package searchengine.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.SitesList;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Раздаёт id строк lemma и index_table блоками по {@code id-block-size}. Блок резервируется в таблице
+ * id_block одним UPDATE в отдельной транзакции, а id внутри блока выдаются из памяти, поэтому строки
+ * можно вставлять пачками без AUTO_INCREMENT и без обращения к базе за каждым id. Блоки, не израсходованные
+ * до остановки приложения или откатанные вместе с транзакцией, просто пропускаются.
+ * <p>
+ * Все вставки в эти таблицы должны брать id здесь: иначе AUTO_INCREMENT выдаст id из уже
+ * зарезервированного блока.
+ */
+@Repository
+public class IdAllocator {
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate reservation;
+    private final int blockSize;
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    public IdAllocator(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, SitesList sitesList) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.reservation = new TransactionTemplate(transactionManager);
+        this.reservation.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.blockSize = Math.max(1, sitesList.getIdBlockSize());
+    }
+
+    /**
+     * @param table таблица lemma или index_table
+     */
+    public long next(String table) {
+        Block block = blocks.computeIfAbsent(table, t -> new Block());
+        synchronized (block) {
+            if (block.next == block.end) {
+                block.end = reserve(table);
+                block.next = block.end - blockSize;
+            }
+            return block.next++;
+        }
+    }
+
+    /**
+     * Сдвигает next_id таблицы на размер блока и возвращает конец зарезервированного блока.
+     * Резервирование фиксируется в собственной транзакции: откат транзакции, в которой id используются,
+     * не должен вернуть блок другим потокам. LAST_INSERT_ID(expr) запоминает значение для соединения,
+     * поэтому UPDATE и SELECT идут в этой же транзакции.
+     */
+    private long reserve(String table) {
+        Long end = reservation.execute(status -> {
+            jdbcTemplate.update("INSERT IGNORE INTO id_block (name, next_id) SELECT ?, COALESCE(MAX(id), 0) + 1 FROM "
+                    + table, table);
+            jdbcTemplate.update("UPDATE id_block SET next_id = LAST_INSERT_ID(next_id + ?) WHERE name = ?",
+                    blockSize, table);
+            return jdbcTemplate.queryForObject("SELECT LAST_INSERT_ID()", Long.class);
+        });
+        if (end == null) {
+            throw new IllegalStateException("Can't reserve ids for " + table);
+        }
+        return end;
+    }
+
+    private static class Block {
+        private long next;
+        private long end;
+    }
+}
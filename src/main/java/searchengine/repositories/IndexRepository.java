@@ -1,13 +1,16 @@
 package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Lemma;
 import searchengine.model.Page;
 import searchengine.model.Index;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -16,8 +19,21 @@ public interface IndexRepository extends JpaRepository<Index, Long> {
     List<Index> findByPagesAndLemmas(@Param("lemmas") List<Lemma> lemmaListId,
                                      @Param("pages") List<Page> pageListId);
 
+    @Query("SELECT i FROM Index i JOIN FETCH i.lemma l WHERE i.pageId.id IN :pages AND l.lemma IN :lemmas")
+    List<Index> findByPageIdsAndLemmas(@Param("pages") Collection<Long> pageIds,
+                                       @Param("lemmas") Collection<String> lemmas);
+
     List<Index> findByLemmaId (long lemmaId);
     List<Index> findByPageId (long pageId);
     Index findByLemmaIdAndPageId (long lemmaId, long pageId);
 
+    @Modifying
+    @Query(value = "DELETE FROM index_table WHERE page_id = :pageId", nativeQuery = true)
+    void deleteByPage(@Param("pageId") long pageId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM index_table WHERE page_id IN (SELECT id FROM page WHERE site_id = :siteId) LIMIT :limit", nativeQuery = true)
+    int deleteBySite(@Param("siteId") long siteId, @Param("limit") int limit);
+
 }
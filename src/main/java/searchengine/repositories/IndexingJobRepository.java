@@ -0,0 +1,22 @@
+package searchengine.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.model.IndexingJob;
+
+import java.util.List;
+
+@Repository
+public interface IndexingJobRepository extends JpaRepository<IndexingJob, String> {
+
+    List<IndexingJob> findAllByOrderByCreatedAt();
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM indexing_job WHERE url = :url", nativeQuery = true)
+    void deleteByUrl(@Param("url") String url);
+}
@@ -1,11 +1,14 @@
 package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Site;
 import searchengine.model.Lemma;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface LemmaRepository extends JpaRepository<Lemma, Long> {
@@ -18,4 +21,29 @@ public interface LemmaRepository extends JpaRepository<Lemma, Long> {
 
     @Query(value = "SELECT l.* FROM Lemma l WHERE l.lemma = :lemma ORDER BY frequency ASC", nativeQuery = true)
     List<Lemma> findByLemma(@Param("lemma") String lemma);
+
+    @Modifying
+    @Query(value = "UPDATE lemma l JOIN index_table i ON i.lemma_id = l.id SET l.frequency = l.frequency - 1 WHERE i.page_id = :pageId", nativeQuery = true)
+    void decrementFrequencyByPage(@Param("pageId") long pageId);
+
+    @Query(value = "SELECT l.* FROM lemma l JOIN index_table i ON i.lemma_id = l.id WHERE i.page_id = :pageId", nativeQuery = true)
+    List<Lemma> findByPage(@Param("pageId") long pageId);
+
+    @Modifying
+    @Query(value = "UPDATE lemma SET frequency = frequency - 1 WHERE id IN :ids", nativeQuery = true)
+    void decrementFrequency(@Param("ids") Collection<Long> lemmaIds);
+
+    @Modifying
+    @Query(value = "UPDATE lemma SET frequency = frequency + :increment WHERE id IN :ids", nativeQuery = true)
+    void incrementFrequency(@Param("ids") Collection<Long> lemmaIds, @Param("increment") int increment);
+
+
+    @Modifying
+    @Query(value = "DELETE FROM lemma WHERE site_id = :siteId AND frequency <= 0", nativeQuery = true)
+    void deleteUnusedBySite(@Param("siteId") long siteId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM lemma WHERE site_id = :siteId LIMIT :limit", nativeQuery = true)
+    int deleteBySite(@Param("siteId") long siteId, @Param("limit") int limit);
 }
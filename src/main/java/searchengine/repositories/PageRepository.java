@@ -1,12 +1,18 @@
 package searchengine.repositories;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.statistics.PageFingerprint;
+import searchengine.dto.statistics.PageValidators;
 import searchengine.model.Page;
 import searchengine.model.Site;
 import searchengine.model.Lemma;
+import searchengine.storage.ContentRef;
 
 import java.util.Collection;
 import java.util.List;
@@ -18,4 +24,53 @@ public interface PageRepository extends JpaRepository<Page, Long> {
     Iterable<Page> findBySiteId(Site site_id);
     @Query(value = "SELECT * FROM page p JOIN index_table i ON p.id = i.page_id WHERE i.lemma_id IN :lemmas", nativeQuery = true)
     List<Page> findByLemmaList(@Param("lemmas") Collection<Lemma> lemmaListId);
+
+    @Query("SELECT new searchengine.dto.statistics.PageValidators(p.path, p.etag, p.lastModified, p.contentHash) FROM Page p WHERE p.siteId = :site")
+    List<PageValidators> findValidatorsBySite(@Param("site") Site site);
+
+    @Query("SELECT new searchengine.dto.statistics.PageFingerprint(p.path, p.fingerprint) FROM Page p WHERE p.siteId = :site AND p.aliasOf IS NULL AND p.fingerprint IS NOT NULL")
+    List<PageFingerprint> findFingerprintsBySite(@Param("site") Site site);
+
+    Page findBySiteIdAndPath(Site site_id, String path);
+
+    /**
+     * Очередная пачка страниц сайта, кроме копий, по возрастанию id, начиная после {@code after}.
+     */
+    @Query("SELECT p FROM Page p WHERE p.siteId = :site AND p.id > :after AND p.aliasOf IS NULL ORDER BY p.id")
+    List<Page> findCanonicalBatch(@Param("site") Site site, @Param("after") long after, Pageable pageable);
+
+    /**
+     * Очередная пачка копий страниц сайта по возрастанию id, начиная после {@code after}.
+     */
+    @Query("SELECT p FROM Page p WHERE p.siteId = :site AND p.id > :after AND p.aliasOf IS NOT NULL ORDER BY p.id")
+    List<Page> findAliasBatch(@Param("site") Site site, @Param("after") long after, Pageable pageable);
+
+    @Query("SELECT new searchengine.storage.ContentRef(p.contentOffset, p.contentLength) FROM Page p WHERE p.contentOffset >= :from AND p.contentOffset < :to")
+    List<ContentRef> findContentRefs(@Param("from") long from, @Param("to") long to);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE page SET content_offset = :to WHERE content_offset = :from", nativeQuery = true)
+    int relocateContent(@Param("from") long from, @Param("to") long to);
+
+    @Query("SELECT new searchengine.storage.ContentRef(p.textOffset, p.textLength) FROM Page p WHERE p.textOffset >= :from AND p.textOffset < :to")
+    List<ContentRef> findTextRefs(@Param("from") long from, @Param("to") long to);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE page SET text_offset = :to WHERE text_offset = :from", nativeQuery = true)
+    int relocateText(@Param("from") long from, @Param("to") long to);
+
+    @Modifying
+    @Query(value = "DELETE FROM page WHERE alias_of = :pageId", nativeQuery = true)
+    void deleteAliasesOf(@Param("pageId") long pageId);
+
+    @Modifying
+    @Query(value = "DELETE FROM page WHERE id = :pageId", nativeQuery = true)
+    void deleteByPageId(@Param("pageId") long pageId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM page WHERE site_id = :siteId LIMIT :limit", nativeQuery = true)
+    int deleteBySite(@Param("siteId") long siteId, @Param("limit") int limit);
 }
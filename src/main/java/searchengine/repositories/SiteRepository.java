@@ -1,13 +1,34 @@
 package searchengine.repositories;
 
-import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Site;
 
+import java.util.List;
+
 @Repository
 public interface SiteRepository extends JpaRepository<Site, Long> {
 
-    @EntityGraph(attributePaths = "pages")
-    Site findByUrl(String url);
+    Site findFirstByUrlAndLiveTrue(String url);
+
+    List<Site> findByLiveTrue();
+
+    List<Site> findByUrlAndLiveFalse(String url);
+
+    /**
+     * Делает поколение {@code siteId} единственным живым поколением сайта.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE site SET live = (id = :siteId) WHERE url = :url", nativeQuery = true)
+    int swapLive(@Param("url") String url, @Param("siteId") long siteId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM site WHERE id = :siteId", nativeQuery = true)
+    void deleteBySiteId(@Param("siteId") long siteId);
 }
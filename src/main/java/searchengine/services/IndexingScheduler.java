@@ -0,0 +1,154 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Единая очередь заданий индексации сайтов. Все задания выполняются на одном постоянном пуле
+ * из {@code indexing-threads} потоков, поэтому число одновременно обходимых сайтов (а с ним потоков
+ * конвейера и соединений) ограничено независимо от числа сайтов и запросов. Для каждого сайта
+ * в очереди или в работе бывает не больше одного задания; задания с большим приоритетом сайта
+ * выполняются раньше, при равном приоритете — в порядке поступления.
+ */
+@Slf4j
+@Component
+public class IndexingScheduler {
+    private final ThreadPoolExecutor workers;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public IndexingScheduler(SitesList sitesList) {
+        int threads = sitesList.getIndexingThreads();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>());
+    }
+
+    /**
+     * Ставит задание индексации сайта в очередь.
+     *
+     * @param site     адрес сайта, по которому задания не дублируются
+     * @param priority приоритет сайта; большее значение выполняется раньше
+     * @return false, если задание для этого сайта уже в очереди или выполняется
+     */
+    public boolean submit(String site, int priority, Runnable task) {
+        Job job = new Job(site, priority, sequence.incrementAndGet(), task);
+        if (jobs.putIfAbsent(site, job) != null) {
+            return false;
+        }
+        workers.execute(job);
+        return true;
+    }
+
+    /**
+     * Выполняет короткое задание сайта сразу в вызывающем потоке, если для сайта нет задания в очереди
+     * или в работе. Проверка и занятие сайта атомарны: пока задание выполняется, новые задания
+     * этого сайта не принимаются. Исключения задания передаются вызывающему.
+     *
+     * @return false, если для сайта уже есть задание
+     */
+    public boolean runExclusive(String site, Runnable task) {
+        Job job = new Job(site, 0, sequence.incrementAndGet(), task);
+        if (jobs.putIfAbsent(site, job) != null) {
+            return false;
+        }
+        try {
+            task.run();
+        } finally {
+            jobs.remove(site, job);
+        }
+        return true;
+    }
+
+    /**
+     * @return true, если есть задания в очереди или в работе
+     */
+    public boolean isActive() {
+        return !jobs.isEmpty();
+    }
+
+    /**
+     * Убирает из очереди все ожидающие задания и прерывает выполняющиеся. Сначала очередь очищается
+     * и только потом прерываются задания: иначе освободившийся поток успел бы взять из очереди следующее.
+     */
+    public void stopAll() {
+        List<Job> current = new ArrayList<>(jobs.values());
+        for (Job job : current) {
+            if (workers.remove(job)) {
+                jobs.remove(job.site, job);
+            }
+        }
+        for (Job job : current) {
+            job.cancel();
+        }
+        log.info("Indexing jobs stopped: " + current.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private class Job implements Runnable, Comparable<Job> {
+        private final String site;
+        private final int priority;
+        private final long order;
+        private final Runnable task;
+        private Thread runner;
+        private boolean cancelled;
+
+        Job(String site, int priority, long order, Runnable task) {
+            this.site = site;
+            this.priority = priority;
+            this.order = order;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (cancelled) {
+                    jobs.remove(site, this);
+                    return;
+                }
+                runner = Thread.currentThread();
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Indexing job failed - " + site, e);
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                }
+                jobs.remove(site, this);
+                Thread.interrupted();
+            }
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (runner != null) {
+                runner.interrupt();
+            }
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            if (priority != other.priority) {
+                return Integer.compare(other.priority, priority);
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+}
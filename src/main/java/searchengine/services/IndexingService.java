@@ -5,4 +5,5 @@ public interface IndexingService {
     boolean urlIndexing(String url);
     boolean startIndexing();
     boolean stopIndexing();
+    boolean relemmatize();
 }
\ No newline at end of file
@@ -1,21 +1,35 @@
 package searchengine.services;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import searchengine.config.SitesList;
+import searchengine.exception.IndexingException;
+import searchengine.model.IndexingJob;
+import searchengine.model.JobType;
 import searchengine.model.Site;
 import searchengine.model.Status;
-import searchengine.parser.IndexParser;
-import searchengine.parser.LemmaParser;
+import searchengine.morphology.LemmaCache;
+import searchengine.morphology.Morphology;
+import searchengine.parser.CrawlCheckpoint;
+import searchengine.parser.PageFetcher;
+import searchengine.parser.LemmaRebuilder;
+import searchengine.parser.PageIndexer;
+import searchengine.parser.PolitenessScheduler;
+import searchengine.parser.SiteGenerations;
 import searchengine.parser.SiteIndexingTask;
-import searchengine.repositories.IndexRepository;
-import searchengine.repositories.LemmaRepository;
+import searchengine.parser.SinglePageIndexer;
+import searchengine.repositories.IndexingJobRepository;
 import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
+import searchengine.storage.ContentCompactor;
+import searchengine.storage.ContentStore;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 /**
  * Реализация сервиса индексации.
  */
@@ -25,39 +39,121 @@ public class IndexingServiceImpl implements IndexingService {
 
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
     private final SitesList sitesList;
-    private final IndexParser indexParser;
-    private final LemmaParser lemmaParser;
-    private ExecutorService executorService;
+    private final Morphology morphology;
+    private final PolitenessScheduler politenessScheduler;
+    private final PageFetcher pageFetcher;
+    private final PageIndexer pageIndexer;
+    private final SinglePageIndexer singlePageIndexer;
+    private final IndexingScheduler indexingScheduler;
+    private final ContentStore contentStore;
+    private final ContentCompactor contentCompactor;
+    private final LemmaCache lemmaCache;
+    private final LemmaRebuilder lemmaRebuilder;
+    private final SiteGenerations siteGenerations;
+    private final IndexingJobRepository indexingJobRepository;
+    private volatile boolean shuttingDown;
 
-    public IndexingServiceImpl(SiteRepository siteRepository, PageRepository pageRepository, LemmaRepository lemmaRepository, IndexRepository indexRepository, SitesList sitesList, IndexParser indexParser, LemmaParser lemmaParser) {
+    public IndexingServiceImpl(SiteRepository siteRepository, PageRepository pageRepository, SitesList sitesList, Morphology morphology, PolitenessScheduler politenessScheduler, PageFetcher pageFetcher, PageIndexer pageIndexer, SinglePageIndexer singlePageIndexer, IndexingScheduler indexingScheduler, ContentStore contentStore, ContentCompactor contentCompactor, LemmaCache lemmaCache, LemmaRebuilder lemmaRebuilder, SiteGenerations siteGenerations, IndexingJobRepository indexingJobRepository) {
         this.siteRepository = siteRepository;
         this.pageRepository = pageRepository;
-        this.lemmaRepository = lemmaRepository;
         this.sitesList = sitesList;
-        this.indexRepository = indexRepository;
-        this.indexParser = indexParser;
-        this.lemmaParser = lemmaParser;
+        this.morphology = morphology;
+        this.politenessScheduler = politenessScheduler;
+        this.pageFetcher = pageFetcher;
+        this.pageIndexer = pageIndexer;
+        this.singlePageIndexer = singlePageIndexer;
+        this.indexingScheduler = indexingScheduler;
+        this.contentStore = contentStore;
+        this.contentCompactor = contentCompactor;
+        this.lemmaCache = lemmaCache;
+        this.lemmaRebuilder = lemmaRebuilder;
+        this.siteGenerations = siteGenerations;
+        this.indexingJobRepository = indexingJobRepository;
     }
     /**
-     * Индексирует указанный URL.
+     * Сайты, индексация которых оборвалась вместе с приложением, остаются в статусе INDEXING
+     * и блокируют запуск новой индексации. Они помечаются прерванными, а следующий запуск
+     * продолжит их обход с контрольной точки. Скрытые поколения сайтов удаляются, кроме тех,
+     * на которые указывает контрольная точка: их обход тоже продолжится.
+     */
+    @PostConstruct
+    public void markInterruptedSites() {
+        for (Site site : siteRepository.findAll()) {
+            if (!site.isLive() && !isCheckpointed(site)) {
+                siteGenerations.drop(site.getId());
+            } else if (site.getStatus() == Status.INDEXING) {
+                log.info("Индексация сайта была прервана - " + site.getUrl());
+                site.setStatus(Status.FAILED);
+                site.setLastError("Индексация прервана остановкой приложения");
+                site.setStatusTime(LocalDateTime.now());
+                siteRepository.save(site);
+            }
+        }
+    }
+
+    /**
+     * Снова ставит в очередь задания, которые ждали или выполнялись, когда приложение остановилось.
+     * Прерванный обход продолжается с контрольной точки. Задания сайтов, которых больше нет
+     * в конфигурации, удаляются.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resubmitJobs() {
+        for (IndexingJob job : indexingJobRepository.findAllByOrderByCreatedAt()) {
+            searchengine.config.Site site = findSite(job.getUrl());
+            if (site == null) {
+                indexingJobRepository.deleteByUrl(job.getUrl());
+                continue;
+            }
+            log.info("Задание восстановлено после перезапуска: " + job.getType() + " - " + job.getUrl());
+            if (job.getType() == JobType.RELEMMATIZE) {
+                submitRelemmatize(site);
+            } else {
+                submit(site);
+            }
+        }
+    }
+
+    /**
+     * При остановке приложения прерванные задания не удаляются из таблицы и будут восстановлены при старте.
+     */
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+    }
+
+    private boolean isCheckpointed(Site site) {
+        String root = site.getUrl() + "/";
+        CrawlCheckpoint checkpoint = CrawlCheckpoint.load(CrawlCheckpoint.fileFor(sitesList.getCheckpointDir(), root), root);
+        return checkpoint != null && checkpoint.getGeneration() == site.getId();
+    }
+    /**
+     * Индексирует указанный URL. Корневой адрес сайта запускает переиндексацию всего сайта,
+     * адрес отдельной страницы сайта переиндексирует только эту страницу. Страница индексируется
+     * через ту же очередь заданий, что и сайты: если у сайта есть задание в очереди или в работе,
+     * запрос отклоняется, а пока страница индексируется, задание сайта не принимается.
      *
      * @param url URL для индексации
      * @return true, если индексация начата; в противном случае - false
      */
     @Override
     public boolean urlIndexing(String url) {
-        if (urlCheck(url)) {
+        searchengine.config.Site site = findSite(url);
+        if (site != null) {
             log.info("Начало переиндексации сайта - " + url);
-            executorService = Executors.newFixedThreadPool(10);
-            executorService.submit(new SiteIndexingTask(pageRepository, siteRepository, lemmaRepository, indexRepository, lemmaParser, indexParser, url, sitesList));
-            executorService.shutdown();
+            if (!submit(site)) {
+                throw new IndexingException("Сайт " + url + " уже индексируется");
+            }
             return true;
-        } else {
+        }
+        searchengine.config.Site pageSite = findPageSite(url);
+        if (pageSite == null) {
             return false;
         }
+        if (!indexingScheduler.runExclusive(pageSite.getUrl(), () -> singlePageIndexer.index(pageSite, url))) {
+            throw new IndexingException("Сайт " + pageSite.getUrl() + " сейчас индексируется");
+        }
+        return true;
     }
     /**
      * Запускает индексацию всех сайтов.
@@ -71,15 +167,77 @@ public class IndexingServiceImpl implements IndexingService {
             return false;
         } else {
             List<searchengine.config.Site> siteList = sitesList.getSites();
-            executorService = Executors.newFixedThreadPool(10);
             for (searchengine.config.Site site : siteList) {
-                String url = site.getUrl();
-                Site dbSite = new Site();
-                dbSite.setName(site.getName());
                 log.info("Парсинг сайта: " + site.getName());
-                executorService.submit(new SiteIndexingTask(pageRepository, siteRepository, lemmaRepository, indexRepository, lemmaParser, indexParser, url, sitesList));
+                submit(site);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Ставит сайт в очередь индексации. После обхода хранилище содержимого уплотняется:
+     * перезаписанные и удалённые страницы оставляют в нём мёртвые записи. В журнал пишется
+     * статистика кэша лемм.
+     */
+    private boolean submit(searchengine.config.Site site) {
+        String url = site.getUrl();
+        SiteIndexingTask task = new SiteIndexingTask(pageRepository, siteRepository, morphology, url, sitesList,
+                politenessScheduler, pageFetcher, pageIndexer, contentStore, siteGenerations);
+        return submit(site, JobType.INDEXING, () -> {
+            task.run();
+            log.info(url + " - " + lemmaCache);
+            contentCompactor.compact();
+        });
+    }
+
+    private boolean submitRelemmatize(searchengine.config.Site site) {
+        String url = site.getUrl();
+        return submit(site, JobType.RELEMMATIZE, () -> {
+            lemmaRebuilder.rebuild(url);
+            log.info(url + " - " + lemmaCache);
+        });
+    }
+
+    /**
+     * Ставит задание в очередь и записывает его в таблицу indexing_job. Строка удаляется, когда задание
+     * завершилось, но не когда его прервала остановка приложения.
+     */
+    private boolean submit(searchengine.config.Site site, JobType type, Runnable task) {
+        String url = site.getUrl();
+        boolean saved = !indexingJobRepository.existsById(url);
+        if (saved) {
+            indexingJobRepository.save(new IndexingJob(url, type, site.getPriority()));
+        }
+        boolean submitted = indexingScheduler.submit(url, site.getPriority(), () -> {
+            try {
+                task.run();
+            } finally {
+                if (!shuttingDown) {
+                    indexingJobRepository.deleteByUrl(url);
+                }
             }
-            executorService.shutdown();
+        });
+        if (!submitted && saved) {
+            indexingJobRepository.deleteByUrl(url);
+        }
+        return submitted;
+    }
+    /**
+     * Пересчитывает леммы и индекс всех сайтов по сохранённому тексту страниц, без обхода.
+     * Задания идут через ту же очередь, что и индексация, поэтому не пересекаются с обходом сайта.
+     *
+     * @return true, если пересчёт начат; false, если идёт индексация
+     */
+    @Override
+    public boolean relemmatize() {
+        if (isIndexingActive()) {
+            log.debug("Пересчёт лемм не запущен: идёт индексация или пересчёт лемм");
+            return false;
+        }
+        for (searchengine.config.Site site : sitesList.getSites()) {
+            log.info("Пересчёт лемм сайта: " + site.getName());
+            submitRelemmatize(site);
         }
         return true;
     }
@@ -92,7 +250,8 @@ public class IndexingServiceImpl implements IndexingService {
     public boolean stopIndexing() {
         if (isIndexingActive()) {
             log.info("Индексация остановлена");
-            executorService.shutdownNow();
+            indexingScheduler.stopAll();
+            indexingJobRepository.deleteAll();
             return true;
         } else {
             log.info("Индексация не была остановлена, так как не была запущена");
@@ -102,31 +261,38 @@ public class IndexingServiceImpl implements IndexingService {
     /**
      * Проверяет, активна ли индексация.
      *
-     * @return true, если индексация активна; в противном случае - false
+     * @return true, если есть задания индексации в очереди или в работе; в противном случае - false
      */
     private boolean isIndexingActive() {
-        siteRepository.flush();
-        Iterable<Site> siteList = siteRepository.findAll();
-        for (Site site : siteList) {
-            if (site.getStatus() == Status.INDEXING) {
-                return true;
-            }
-        }
-        return false;
+        return indexingScheduler.isActive();
     }
     /**
-     * Проверяет, существует ли указанный URL в списке сайтов.
+     * Ищет сайт с указанным URL в списке сайтов.
      *
      * @param url URL для проверки
-     * @return true, если URL существует в списке; в противном случае - false
+     * @return сайт из конфигурации или null, если URL нет в списке
      */
-    private boolean urlCheck(String url) {
+    private searchengine.config.Site findSite(String url) {
         List<searchengine.config.Site> urlList = sitesList.getSites();
         for (searchengine.config.Site site : urlList) {
             if (site.getUrl().equals(url)) {
-                return true;
+                return site;
+            }
+        }
+        return null;
+    }
+    /**
+     * Ищет сайт из списка, которому принадлежит адрес страницы.
+     *
+     * @param url адрес страницы
+     * @return сайт из конфигурации или null, если адрес не относится ни к одному сайту
+     */
+    private searchengine.config.Site findPageSite(String url) {
+        for (searchengine.config.Site site : sitesList.getSites()) {
+            if (url.startsWith(site.getUrl() + "/")) {
+                return site;
             }
         }
-        return false;
+        return null;
     }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package searchengine.services;
+
+import searchengine.morphology.Morphology;
+import searchengine.morphology.Tokenizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Поиск фразы по позициям лемм. Запрос в кавычках ищет слова подряд: {@code "купить телефон"}.
+ * Запрос {@code "купить телефон"~2} допускает сдвиг каждого слова фразы до двух слов
+ * в любую сторону. Служебные слова фразы не ищутся, но занимают своё место в ней.
+ */
+class PhraseQuery {
+    private static final Pattern PHRASE = Pattern.compile("^\\s*\"([^\"]+)\"\\s*(?:~(\\d+))?\\s*$");
+
+    /**
+     * Леммы каждого слова фразы по порядку; пустой список — служебное или неизвестное слово.
+     */
+    private final List<List<String>> slots;
+    private final int slop;
+
+    private PhraseQuery(List<List<String>> slots, int slop) {
+        this.slots = slots;
+        this.slop = slop;
+    }
+
+    /**
+     * @return фраза или null, если запрос не в кавычках или в нём меньше двух значимых слов
+     */
+    static PhraseQuery parse(String searchText, Morphology morphology) {
+        Matcher matcher = PHRASE.matcher(searchText);
+        if (!matcher.matches()) {
+            return null;
+        }
+        List<List<String>> slots = new ArrayList<>();
+        Tokenizer.forEachWord(matcher.group(1), (word, start) -> slots.add(morphology.getLemma(word)));
+        long significant = slots.stream().filter(slot -> !slot.isEmpty()).count();
+        if (significant < 2) {
+            return null;
+        }
+        int slop = matcher.group(2) == null ? 0 : Integer.parseInt(matcher.group(2));
+        return new PhraseQuery(slots, slop);
+    }
+
+    /**
+     * @param tokensByLemma номера слов страницы для каждой леммы запроса, по возрастанию
+     */
+    boolean matches(Map<String, int[]> tokensByLemma) {
+        int anchor = 0;
+        while (slots.get(anchor).isEmpty()) {
+            anchor++;
+        }
+        for (String lemma : slots.get(anchor)) {
+            for (int token : tokensByLemma.getOrDefault(lemma, new int[0])) {
+                if (matchesFrom(token - anchor, anchor, tokensByLemma)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesFrom(int start, int anchor, Map<String, int[]> tokensByLemma) {
+        for (int i = 0; i < slots.size(); i++) {
+            if (i == anchor || slots.get(i).isEmpty()) {
+                continue;
+            }
+            boolean found = false;
+            for (String lemma : slots.get(i)) {
+                if (containsBetween(tokensByLemma.get(lemma), start + i - slop, start + i + slop)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsBetween(int[] tokens, int from, int to) {
+        if (tokens == null) {
+            return false;
+        }
+        int index = Arrays.binarySearch(tokens, from);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index < tokens.length && tokens[index] <= to;
+    }
+}
@@ -2,17 +2,22 @@ package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 import org.springframework.stereotype.Service;
+import searchengine.dto.statistics.PageHit;
 import searchengine.dto.statistics.StatisticsSearch;
 import searchengine.model.Page;
 import searchengine.model.Site;
 import searchengine.model.Index;
-import searchengine.model.Lemma;
 import searchengine.morphology.Morphology;
+import searchengine.morphology.TermPositions;
+import searchengine.morphology.Tokenizer;
 import searchengine.repositories.IndexRepository;
-import searchengine.repositories.LemmaRepository;
 import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
+import searchengine.storage.ContentStore;
+import searchengine.storage.InvertedIndex;
 import searchengine.utils.CleanHtmlCode;
 
 import java.util.*;
@@ -24,11 +29,14 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 @Slf4j
 public class SearchServiceImpl implements SearchService {
+    private static final int PHRASE_BATCH = 200;
+
     private final Morphology morphology;
-    private final LemmaRepository lemmaRepository;
     private final PageRepository pageRepository;
     private final IndexRepository indexSearchRepository;
     private final SiteRepository siteRepository;
+    private final ContentStore contentStore;
+    private final InvertedIndex invertedIndex;
     /**
      * Выполняет поиск по всем сайтам.
      *
@@ -40,34 +48,9 @@ public class SearchServiceImpl implements SearchService {
     @Override
     public List<StatisticsSearch> allSiteSearch(String searchText, int offset, int limit) {
         log.info("Получение результатов поиска \"" + searchText + "\"");
-        List<Site> siteList = siteRepository.findAll();
-        List<StatisticsSearch> result = new ArrayList<>();
-        List<Lemma> foundLemmaList = new ArrayList<>();
-        List<String> textLemmaList = getLemmaFromSearchText(searchText);
-        for (Site site : siteList) {
-            foundLemmaList.addAll(getLemmaListFromSite(textLemmaList, site));
-        }
-        List<StatisticsSearch> searchData = null;
-        for (Lemma l : foundLemmaList) {
-            if (l.getLemma().equals(searchText)) {
-                searchData = new ArrayList<>(getSearchDtoList(foundLemmaList, textLemmaList, offset, limit));
-                searchData.sort((o1, o2) -> Float.compare(o2.getRelevance(), o1.getRelevance()));
-                if (searchData.size() > limit) {
-                    for (int i = offset; i < limit; i++) {
-                        result.add(searchData.get(i));
-                    }
-                    return result;
-                }
-            } else {
-                try {
-                    throw new Exception();
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
-            }
-        }
+        List<StatisticsSearch> result = search(searchText, siteRepository.findByLiveTrue(), offset, limit);
         log.info("Поиск завершен. Получены результаты.");
-        return searchData;
+        return result;
     }
     /**
      * Выполняет поиск на указанном сайте.
@@ -81,11 +64,10 @@ public class SearchServiceImpl implements SearchService {
     @Override
     public List<StatisticsSearch> siteSearch(String searchText, String url, int offset, int limit) {
         log.info("Поиск \"" + searchText + "\" в - " + url);
-        Site site = siteRepository.findByUrl(url);
-        List<String> textLemmaList = getLemmaFromSearchText(searchText);
-        List<Lemma> foundLemmaList = getLemmaListFromSite(textLemmaList, site);
+        Site site = siteRepository.findFirstByUrlAndLiveTrue(url);
+        List<StatisticsSearch> result = search(searchText, site == null ? List.of() : List.of(site), offset, limit);
         log.info("Поиск завершен. Получены результаты.");
-        return getSearchDtoList(foundLemmaList, textLemmaList, offset, limit);
+        return result;
     }
     /**
      * Извлекает леммы из текста для поиска.
@@ -94,89 +76,152 @@ public class SearchServiceImpl implements SearchService {
      * @return список лемм
      */
     private List<String> getLemmaFromSearchText(String searchText) {
-        String[] words = searchText.toLowerCase(Locale.ROOT).split(" ");
         List<String> lemmaList = new ArrayList<>();
-        for (String lemma : words) {
-            List<String> list = morphology.getLemma(lemma);
-            lemmaList.addAll(list);
-        }
+        Tokenizer.forEachWord(searchText, (word, start) -> lemmaList.addAll(morphology.getLemma(word)));
         return lemmaList;
     }
     /**
-     * Получает список лемм из указанного сайта.
+     * Ищет страницы по {@link InvertedIndex}: релевантность считается в памяти, а из базы читаются
+     * только страницы запрошенной порции результатов и их строки индекса для сниппетов.
+     * Релевантность нормируется на лучший результат.
      *
-     * @param lemmas список лемм
-     * @param site   сайт для поиска
-     * @return список лемм
+     * @param searchText текст для поиска
+     * @param sites      живые поколения сайтов, по которым идёт поиск
+     * @param offset     смещение для пагинации
+     * @param limit      максимальное количество результатов
+     * @return список статистических данных о результатах поиска
      */
-    private List<Lemma> getLemmaListFromSite(List<String> lemmas, Site site) {
-        lemmaRepository.flush();
-        return lemmaRepository.findLemmaListBySite(lemmas, site)
-                .stream()
-                .sorted(Comparator.comparingInt(Lemma::getFrequency))
-                .collect(Collectors.toList());
+    private List<StatisticsSearch> search(String searchText, List<Site> sites, int offset, int limit) {
+        List<String> textLemmaList = getLemmaFromSearchText(searchText);
+        Set<String> lemmas = new LinkedHashSet<>(textLemmaList);
+        if (lemmas.isEmpty() || sites.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> siteIds = sites.stream().map(Site::getId).collect(Collectors.toList());
+        PhraseQuery phrase = PhraseQuery.parse(searchText, morphology);
+        int wanted = offset + limit;
+        List<PageHit> hits = phrase == null
+                ? invertedIndex.search(siteIds, lemmas, wanted)
+                : findPhrase(siteIds, lemmas, phrase, wanted);
+        if (hits.size() <= offset) {
+            return new ArrayList<>();
+        }
+        float maxRelevance = hits.get(0).getRelevance();
+        List<PageHit> portion = hits.subList(offset, hits.size());
+        List<Long> pageIds = portion.stream().map(PageHit::getPageId).collect(Collectors.toList());
+        Map<Long, Page> pages = pageRepository.findAllById(pageIds).stream()
+                .collect(Collectors.toMap(Page::getId, page -> page));
+        Map<Long, List<Index>> indexesByPage = findIndexes(pageIds, lemmas);
+        List<StatisticsSearch> result = new ArrayList<>();
+        for (PageHit hit : portion) {
+            Page page = pages.get(hit.getPageId());
+            if (page != null) {
+                result.add(getSearchData(page, hit.getRelevance() / maxRelevance, textLemmaList,
+                        indexesByPage.get(page.getId())));
+            }
+        }
+        return result;
     }
     /**
-     * Получает список статистических данных о результатах поиска на основе лемм и текста запроса.
+     * Отбирает страницы с фразой. Кандидаты из {@link InvertedIndex} проверяются по убыванию
+     * релевантности порциями по {@value #PHRASE_BATCH}, позиции лемм читаются из базы только для них.
      *
-     * @param lemmaList     список лемм
-     * @param textLemmaList список лемм текста запроса
-     * @param offset        смещение для пагинации
-     * @param limit         максимальное количество результатов
-     * @return список статистических данных о результатах поиска
+     * @param wanted сколько страниц с фразой нужно найти
+     * @return страницы с фразой по убыванию релевантности
      */
-    private List<StatisticsSearch> getSearchDtoList(List<Lemma> lemmaList, List<String> textLemmaList, int offset, int limit) {
-        pageRepository.flush();
-        if (lemmaList.size() >= textLemmaList.size()) {
-            List<Page> foundPageList = pageRepository.findByLemmaList(lemmaList);
-            indexSearchRepository.flush();
-            List<Index> foundIndexList = indexSearchRepository.findByPagesAndLemmas(lemmaList, foundPageList);
-            Hashtable<Page, Float> sortedPageByAbsRelevance = getPageAbsRelevance(foundPageList, foundIndexList);
-            return getSearchData(sortedPageByAbsRelevance, textLemmaList, offset, limit);
-        } else {
-            return new ArrayList<>();
+    private List<PageHit> findPhrase(List<Long> siteIds, Set<String> lemmas, PhraseQuery phrase, int wanted) {
+        List<PageHit> matches = new ArrayList<>();
+        int checked = 0;
+        int max = Math.max(wanted, PHRASE_BATCH);
+        while (true) {
+            List<PageHit> candidates = invertedIndex.search(siteIds, lemmas, max);
+            while (checked < candidates.size()) {
+                List<PageHit> batch = candidates.subList(checked, Math.min(candidates.size(), checked + PHRASE_BATCH));
+                Map<Long, List<Index>> indexesByPage = findIndexes(
+                        batch.stream().map(PageHit::getPageId).collect(Collectors.toList()), lemmas);
+                for (PageHit hit : batch) {
+                    if (phrase.matches(tokensByLemma(indexesByPage.get(hit.getPageId())))) {
+                        matches.add(hit);
+                        if (matches.size() == wanted) {
+                            return matches;
+                        }
+                    }
+                }
+                checked += batch.size();
+            }
+            if (candidates.size() < max) {
+                return matches;
+            }
+            max *= 4;
         }
     }
     /**
-     * Получает статистические данные о результатах поиска.
+     * Строки индекса страниц для лемм запроса, с позициями.
+     */
+    private Map<Long, List<Index>> findIndexes(List<Long> pageIds, Set<String> lemmas) {
+        return indexSearchRepository.findByPageIdsAndLemmas(pageIds, lemmas).stream()
+                .collect(Collectors.groupingBy(index -> index.getPageId().getId()));
+    }
+    /**
+     * Получает данные результата поиска для страницы. Заголовок и текст страницы извлечены
+     * при индексации; HTML разбирается только у страниц, проиндексированных до этого.
      *
-     * @param pageList      список страниц
+     * @param page          найденная страница
+     * @param relevance     относительная релевантность страницы
      * @param textLemmaList список лемм текста запроса
-     * @return список статистических данных о результатах поиска
+     * @param indexes       строки индекса страницы с позициями лемм запроса
+     * @return данные результата поиска
      */
-    private List<StatisticsSearch> getSearchData(Hashtable<Page, Float> pageList, List<String> textLemmaList, int offset, int limit) {
-        List<StatisticsSearch> result = new ArrayList<>();
-
-        for (Page page : pageList.keySet()) {
-            String uri = page.getPath();
-            String content = page.getContent();
-            Site pageSite = page.getSiteId();
-            String site = pageSite.getUrl();
-            String siteName = pageSite.getName();
-            Float absRelevance = pageList.get(page);
-
-            StringBuilder clearContent = new StringBuilder();
-            String title = CleanHtmlCode.clear(content, "title");
-            String body = CleanHtmlCode.clear(content, "body");
-            clearContent.append(title).append(" ").append(body);
-            String snippet = getSnippet(clearContent.toString(), textLemmaList);
-
-            result.add(new StatisticsSearch(site, siteName, uri, title, snippet, absRelevance));
+    private StatisticsSearch getSearchData(Page page, float relevance, List<String> textLemmaList, List<Index> indexes) {
+        Site pageSite = page.getSiteId();
+        String title = page.getTitle();
+        String body;
+        if (page.getTextOffset() != null || title != null) {
+            body = contentStore.read(page.getTextOffset(), page.getTextLength());
+        } else {
+            Document document = Jsoup.parse(contentStore.read(page.getContentOffset(), page.getContentLength()));
+            title = CleanHtmlCode.clear(document, "title");
+            body = CleanHtmlCode.clear(document, "body");
         }
-        return result;
+        String content = TermPositions.pageText(title, body);
+        String snippet = getSnippet(content, textLemmaList, indexes);
+        return new StatisticsSearch(pageSite.getUrl(), pageSite.getName(), page.getPath(), title, snippet, relevance);
     }
     /**
-     * Создает сниппет для результата поиска.
+     * Номера слов страницы для каждой леммы из сохранённых позиций.
+     */
+    private Map<String, int[]> tokensByLemma(List<Index> indexes) {
+        Map<String, int[]> tokens = new HashMap<>();
+        if (indexes != null) {
+            for (Index index : indexes) {
+                tokens.put(index.getLemma().getLemma(), TermPositions.decodeTokens(index.getPositions()));
+            }
+        }
+        return tokens;
+    }
+    /**
+     * Создает сниппет для результата поиска. Смещения слов запроса берутся из позиций, сохранённых
+     * при индексации; текст лемматизируется заново только у страниц, проиндексированных без позиций.
      *
      * @param content    содержимое страницы
      * @param lemmaList  список лемм
+     * @param indexes    строки индекса страницы для лемм запроса
      * @return сниппет результата поиска
      */
-    private String getSnippet(String content, List<String> lemmaList) {
+    private String getSnippet(String content, List<String> lemmaList, List<Index> indexes) {
         List<Integer> lemmaIndex = new ArrayList<>();
         StringBuilder result = new StringBuilder();
-        for (String lemma : lemmaList) {
-            lemmaIndex.addAll(morphology.findLemmaIndexInText(content, lemma));
+        boolean positionsStored = indexes != null && indexes.stream().allMatch(index -> index.getPositions() != null);
+        if (positionsStored) {
+            for (Index index : indexes) {
+                for (int offset : TermPositions.decodeOffsets(index.getPositions())) {
+                    lemmaIndex.add(offset);
+                }
+            }
+        } else {
+            for (String lemma : lemmaList) {
+                lemmaIndex.addAll(morphology.findLemmaIndexInText(content, lemma));
+            }
         }
         Collections.sort(lemmaIndex);
         List<String> wordsList = getWordsFromContent(content, lemmaIndex);
@@ -238,29 +283,4 @@ public class SearchServiceImpl implements SearchService {
         }
         return text;
     }
-    /**
-     * Вычисляет абсолютную релевантность страницы на основе списка страниц и индексов.
-     *
-     * @param pageList  список страниц
-     * @param indexList список индексов
-     * @return хэш-таблица с абсолютной релевантностью страниц
-     */
-    private Hashtable<Page, Float> getPageAbsRelevance(List<Page> pageList, List<Index> indexList) {
-        HashMap<Page, Float> pageWithRelevance = new HashMap<>();
-        for (Page page : pageList) {
-            float relevant = 0;
-            for (Index index : indexList) {
-                if (index.getPageId() == page) {
-                    relevant += index.getRank();
-                }
-            }
-            pageWithRelevance.put(page, relevant);
-        }
-        HashMap<Page, Float> pageWithAbsRelevance = new HashMap<>();
-        for (Page page : pageWithRelevance.keySet()) {
-            float absRelevant = pageWithRelevance.get(page) / Collections.max(pageWithRelevance.values());
-            pageWithAbsRelevance.put(page, absRelevant);
-        }
-        return pageWithAbsRelevance.entrySet().stream().sorted(Map.Entry.comparingByValue(Comparator.reverseOrder())).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (e1, e2) -> e1, Hashtable::new));
-    }
-}
\ No newline at end of file
+}
@@ -15,7 +15,9 @@ import searchengine.repositories.SiteRepository;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 /**
  * Реализация сервиса статистики.
  */
@@ -26,15 +28,18 @@ public class StatisticsServiceImpl implements StatisticsService {
     private final LemmaRepository lemmaRepository;
     private final SiteRepository siteRepository;
     /**
-     * Получает общую статистику.
+     * Получает общую статистику по показанным поколениям сайтов.
      *
      * @return объект общей статистики
      */
-    private TotalStatistics getTotal() {
-        long sites = siteRepository.count();
-        long pages = pageRepository.count();
-        long lemmas = lemmaRepository.count();
-        return new TotalStatistics(sites, pages, lemmas, true);
+    private TotalStatistics getTotal(List<DetailedStatisticsItem> list) {
+        long pages = 0;
+        long lemmas = 0;
+        for (DetailedStatisticsItem item : list) {
+            pages += item.getPages();
+            lemmas += item.getLemmas();
+        }
+        return new TotalStatistics(list.size(), pages, lemmas, true);
     }
     /**
      * Получает детализированную статистику для указанного сайта.
@@ -53,14 +58,20 @@ public class StatisticsServiceImpl implements StatisticsService {
         return new DetailedStatisticsItem(url, name, status, statusTime, error, pages, lemmas);
     }
     /**
-     * Получает список детализированных статистических данных для всех сайтов.
+     * Получает список детализированных статистических данных для всех сайтов. Для сайта, новое поколение
+     * которого строится, показывается оно, иначе — живое поколение.
      *
      * @return список объектов детализированной статистики для всех сайтов
      */
     private List<DetailedStatisticsItem> getDetailedList() {
-        List<Site> siteList = siteRepository.findAll();
+        Map<String, Site> shown = new LinkedHashMap<>();
+        for (Site site : siteRepository.findAll()) {
+            if (site.isLive() || site.getStatus() == Status.INDEXING) {
+                shown.merge(site.getUrl(), site, (current, other) -> other.isLive() ? current : other);
+            }
+        }
         List<DetailedStatisticsItem> result = new ArrayList<>();
-        for (Site site : siteList) {
+        for (Site site : shown.values()) {
             DetailedStatisticsItem item = getDetailed(site);
             result.add(item);
         }
@@ -74,8 +85,8 @@ public class StatisticsServiceImpl implements StatisticsService {
      */
     @Override
     public StatisticsResponse getStatistics() {
-        TotalStatistics total = getTotal();
         List<DetailedStatisticsItem> list = getDetailedList();
+        TotalStatistics total = getTotal(list);
         return new StatisticsResponse(true, new StatisticsData(total, list));
     }
 }
@@ -0,0 +1,70 @@
+package searchengine.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.repositories.PageRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Уплотняет {@link ContentStore}, сверяясь с таблицей page: живыми считаются записи,
+ * на которые ссылается какая-нибудь страница — как HTML-код, так и извлечённый текст.
+ */
+@Slf4j
+@Component
+public class ContentCompactor implements ContentStore.LiveContent {
+    private final ContentStore contentStore;
+    private final PageRepository pageRepository;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public ContentCompactor(ContentStore contentStore, PageRepository pageRepository) {
+        this.contentStore = contentStore;
+        this.pageRepository = pageRepository;
+    }
+
+    /**
+     * Запускает уплотнение, если оно уже не выполняется в другом потоке.
+     */
+    public void compact() {
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            contentStore.compact(this);
+        } catch (RuntimeException e) {
+            log.error("Content compaction failed", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Не даёт уплотнению начаться, пока блокировка не будет закрыта, а уже идущее уплотнение дожидается.
+     * Нужна тому, кто копирует ссылки на записи хранилища в новые строки page: уплотнение переносит
+     * запись, обновляя только строки, которые уже есть в базе, и удаляет её прежний сегмент.
+     */
+    public Hold hold() throws InterruptedException {
+        lock.lockInterruptibly();
+        return lock::unlock;
+    }
+
+    public interface Hold extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    @Override
+    public List<ContentRef> find(long from, long to) {
+        List<ContentRef> live = new ArrayList<>(pageRepository.findContentRefs(from, to));
+        live.addAll(pageRepository.findTextRefs(from, to));
+        return live;
+    }
+
+    @Override
+    public boolean relocate(ContentRef from, ContentRef to) {
+        return pageRepository.relocateContent(from.getOffset(), to.getOffset())
+                + pageRepository.relocateText(from.getOffset(), to.getOffset()) > 0;
+    }
+}
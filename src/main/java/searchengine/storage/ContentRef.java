@@ -0,0 +1,12 @@
+package searchengine.storage;
+
+import lombok.Value;
+
+/**
+ * Положение сжатого содержимого страницы в хранилище.
+ */
+@Value
+public class ContentRef {
+    long offset;
+    int length;
+}
@@ -0,0 +1,60 @@
+package searchengine.storage;
+
+import java.util.List;
+
+/**
+ * Хранилище HTML-кода и извлечённого текста страниц вне таблицы page. Страница хранит только ссылку на содержимое
+ * ({@link ContentRef}); записи неизменяемы, а место удалённых и перезаписанных страниц
+ * освобождается уплотнением.
+ */
+public interface ContentStore {
+
+    /**
+     * @return ссылка на записанное содержимое или null для пустой строки
+     */
+    ContentRef write(String content);
+
+    /**
+     * @return содержимое по ссылке или пустая строка, если ссылки нет
+     */
+    String read(Long offset, Integer length);
+
+    /**
+     * Закрепляет записи, ссылки на которые ещё не зафиксированы в базе: пока закрепление не закрыто,
+     * уплотнение не трогает места, куда они могли попасть, и не примет их за мёртвые.
+     */
+    Pin pin();
+
+    /**
+     * Уплотняет хранилище: живые записи переносятся, остальное место освобождается.
+     */
+    void compact(LiveContent liveContent);
+
+    interface Pin extends AutoCloseable {
+        /**
+         * Сбрасывает на диск всё, записанное с начала закрепления; вызывается до фиксации ссылок в базе,
+         * чтобы после сбоя ОС зафиксированные ссылки не указывали на потерянные данные.
+         */
+        void sync();
+
+        @Override
+        void close();
+    }
+
+    /**
+     * Сведения о том, какие записи хранилища ещё используются страницами.
+     */
+    interface LiveContent {
+        /**
+         * @return записи, на которые ссылаются страницы, со смещением в {@code [from, to)}
+         */
+        List<ContentRef> find(long from, long to);
+
+        /**
+         * Переводит страницу со старой записи на новую.
+         *
+         * @return false, если страница за это время уже перестала ссылаться на старую запись
+         */
+        boolean relocate(ContentRef from, ContentRef to);
+    }
+}
@@ -0,0 +1,452 @@
+package searchengine.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.dto.statistics.PageHit;
+
+import javax.sql.DataSource;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс в памяти: для каждого поколения сайта и каждой леммы — номера страниц
+ * по возрастанию ({@code int[]}) и ранги леммы на них ({@code float[]}). Загружается из index_table
+ * после старта приложения и пополняется пачками после фиксации транзакций индексации, поэтому поиск
+ * считает релевантность без запросов к базе.
+ *
+ * Страница получает номер внутри сайта при добавлении. Удалённая или заменённая страница только
+ * помечается удалённой и пропускается при поиске; когда таких номеров становится больше четверти,
+ * списки сайта переписываются без них. Читатели работают с неизменяемым снимком сайта, который
+ * пишущий поток заменяет целиком после каждой пачки.
+ *
+ * Пока индекс не загружен — во время загрузки или после её ошибки, — поиск считает релевантность
+ * запросом к index_table. Неудачная загрузка повторяется с растущей паузой до минуты.
+ */
+@Slf4j
+@Component
+public class InvertedIndex {
+    private static final String LOAD_ROWS =
+            "SELECT l.site_id, l.lemma, i.page_id, i.my_rank FROM index_table i JOIN lemma l ON l.id = i.lemma_id";
+    private static final String SEARCH_ROWS = "SELECT i.page_id, SUM(i.my_rank) AS relevance FROM index_table i"
+            + " JOIN lemma l ON l.id = i.lemma_id WHERE l.site_id IN (%1$s) AND l.lemma IN (%2$s) AND l.site_id IN"
+            + " (SELECT site_id FROM lemma WHERE site_id IN (%1$s) AND lemma IN (%2$s) GROUP BY site_id HAVING COUNT(*) = ?)"
+            + " GROUP BY i.page_id ORDER BY relevance DESC, i.page_id LIMIT ?";
+    private static final int COMPACT_MIN_DELETED = 1024;
+    private static final long RETRY_MIN_MS = 1000;
+    private static final long RETRY_MAX_MS = 60000;
+    private static final Comparator<PageHit> WORST_FIRST = Comparator.comparingDouble(PageHit::getRelevance)
+            .thenComparing(Comparator.comparingLong(PageHit::getPageId).reversed());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Long, SiteIndex> sites = new ConcurrentHashMap<>();
+    /**
+     * Загрузка держит блокировку записи: пачки, зафиксированные во время загрузки, применяются после неё.
+     */
+    private final ReadWriteLock loadLock = new ReentrantReadWriteLock();
+    private volatile boolean loaded;
+
+    public InvertedIndex(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // Connector/J отдаёт строки потоком, а не читает всю выборку в память, только при таком размере
+        this.jdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Thread thread = new Thread(this::loadAll, "inverted-index-loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void loadAll() {
+        long pause = RETRY_MIN_MS;
+        while (!tryLoad()) {
+            log.info("Inverted index load will be retried in " + pause + " ms; search uses the database meanwhile");
+            try {
+                Thread.sleep(pause);
+            } catch (InterruptedException e) {
+                return;
+            }
+            pause = Math.min(pause * 2, RETRY_MAX_MS);
+        }
+    }
+
+    private boolean tryLoad() {
+        loadLock.writeLock().lock();
+        try {
+            long start = System.currentTimeMillis();
+            Map<Long, SiteIndex> loading = new HashMap<>();
+            long[] rows = new long[1];
+            jdbcTemplate.query(LOAD_ROWS, (RowCallbackHandler) rs -> {
+                loading.computeIfAbsent(rs.getLong(1), id -> new SiteIndex())
+                        .load(rs.getString(2), rs.getLong(3), rs.getFloat(4));
+                rows[0]++;
+            });
+            loading.values().forEach(SiteIndex::finishLoad);
+            sites.clear();
+            sites.putAll(loading);
+            loaded = true;
+            log.info("Inverted index loaded in " + (System.currentTimeMillis() - start) + " ms: "
+                    + loading.size() + " sites, " + rows[0] + " postings");
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Can't load inverted index", e);
+            return false;
+        } finally {
+            loadLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ищет страницы, на которых есть хотя бы одна из лемм. Сайт, где встречаются не все леммы
+     * запроса, пропускается. Пока индекс не загружен, ищет запросом к базе.
+     *
+     * @param max сколько лучших страниц вернуть
+     * @return страницы по убыванию суммы рангов лемм, при равенстве — по возрастанию id
+     */
+    public List<PageHit> search(Collection<Long> siteIds, Collection<String> lemmas, int max) {
+        if (max <= 0 || lemmas.isEmpty() || siteIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (!loaded) {
+            return searchDatabase(siteIds, new LinkedHashSet<>(lemmas), max);
+        }
+        PriorityQueue<PageHit> top = new PriorityQueue<>(Math.min(max, 1024) + 1, WORST_FIRST);
+        for (Long siteId : siteIds) {
+            SiteIndex site = sites.get(siteId);
+            if (site != null) {
+                site.snapshot.collect(lemmas, max, top);
+            }
+        }
+        List<PageHit> hits = new ArrayList<>(top);
+        hits.sort(WORST_FIRST.reversed());
+        return hits;
+    }
+
+    private List<PageHit> searchDatabase(Collection<Long> siteIds, Set<String> lemmas, int max) {
+        String sql = String.format(SEARCH_ROWS, String.join(",", Collections.nCopies(siteIds.size(), "?")),
+                String.join(",", Collections.nCopies(lemmas.size(), "?")));
+        List<Object> args = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            args.addAll(siteIds);
+            args.addAll(lemmas);
+        }
+        args.add(lemmas.size());
+        args.add(max);
+        return jdbcTemplate.query(sql, (rs, row) -> new PageHit(rs.getLong(1), rs.getFloat(2)), args.toArray());
+    }
+
+    /**
+     * @return пачка изменений индекса сайта; применяется вызовом {@link Batch#apply()}
+     */
+    public Batch batch(long siteId) {
+        return new Batch(siteId);
+    }
+
+    /**
+     * Убирает поколение сайта из индекса.
+     */
+    public void drop(long siteId) {
+        loadLock.readLock().lock();
+        try {
+            sites.remove(siteId);
+        } finally {
+            loadLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Изменения индекса одного сайта. Добавление страницы заменяет её прежние леммы, если она уже была в индексе.
+     */
+    public class Batch {
+        private final long siteId;
+        private final Set<Long> removed = new HashSet<>();
+        private final Map<Long, Map<String, Float>> added = new LinkedHashMap<>();
+
+        private Batch(long siteId) {
+            this.siteId = siteId;
+        }
+
+        public void add(long pageId, String lemma, float rank) {
+            added.computeIfAbsent(pageId, id -> new HashMap<>()).put(lemma, rank);
+        }
+
+        public void remove(long pageId) {
+            removed.add(pageId);
+            added.remove(pageId);
+        }
+
+        /**
+         * Применяет пачку после фиксации текущей транзакции, а вне транзакции — сразу.
+         * Если транзакция откатится, индекс не меняется.
+         */
+        public void apply() {
+            if (removed.isEmpty() && added.isEmpty()) {
+                return;
+            }
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        applyNow();
+                    }
+                });
+            } else {
+                applyNow();
+            }
+        }
+
+        private void applyNow() {
+            loadLock.readLock().lock();
+            try {
+                sites.computeIfAbsent(siteId, id -> new SiteIndex()).apply(this);
+            } catch (RuntimeException e) {
+                log.error("Can't update inverted index of site " + siteId, e);
+            } finally {
+                loadLock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Индекс одного поколения сайта. Номера страниц и сборка снимков — только в пишущем потоке.
+     */
+    private static class SiteIndex {
+        private final LongIntMap ordinals = new LongIntMap();
+        private volatile Snapshot snapshot = Snapshot.EMPTY;
+        private Map<String, PostingsBuilder> loading;
+        private long[] loadingPages;
+
+        void load(String lemma, long pageId, float rank) {
+            if (loading == null) {
+                loading = new HashMap<>();
+                loadingPages = new long[16];
+            }
+            int ordinal = ordinals.get(pageId);
+            if (ordinal == LongIntMap.ABSENT) {
+                ordinal = ordinals.size();
+                ordinals.put(pageId, ordinal);
+                if (ordinal == loadingPages.length) {
+                    loadingPages = Arrays.copyOf(loadingPages, ordinal * 2);
+                }
+                loadingPages[ordinal] = pageId;
+            }
+            int page = ordinal;
+            loading.computeIfAbsent(lemma, l -> new PostingsBuilder()).add(page, rank);
+        }
+
+        void finishLoad() {
+            Map<String, Postings> terms = new HashMap<>(loading.size() * 4 / 3 + 1);
+            loading.forEach((lemma, builder) -> terms.put(lemma, builder.buildSorted()));
+            snapshot = new Snapshot(terms, loadingPages, ordinals.size(), new BitSet(), 0);
+            loading = null;
+            loadingPages = null;
+        }
+
+        synchronized void apply(Batch batch) {
+            Snapshot current = snapshot;
+            BitSet deleted = (BitSet) current.deleted.clone();
+            int deletedCount = current.deletedCount;
+            for (Long pageId : batch.removed) {
+                deletedCount += delete(pageId, deleted);
+            }
+            for (Long pageId : batch.added.keySet()) {
+                deletedCount += delete(pageId, deleted);
+            }
+
+            long[] pageIds = current.pageIds;
+            int size = current.size;
+            Map<String, PostingsBuilder> appended = new HashMap<>();
+            for (Map.Entry<Long, Map<String, Float>> page : batch.added.entrySet()) {
+                if (size == pageIds.length) {
+                    pageIds = Arrays.copyOf(pageIds, Math.max(16, size * 2));
+                }
+                int ordinal = size++;
+                pageIds[ordinal] = page.getKey();
+                ordinals.put(page.getKey(), ordinal);
+                // номера новых страниц больше всех прежних, поэтому списки остаются упорядоченными
+                page.getValue().forEach((lemma, rank) ->
+                        appended.computeIfAbsent(lemma, l -> new PostingsBuilder()).add(ordinal, rank));
+            }
+            Map<String, Postings> terms = current.terms;
+            if (!appended.isEmpty()) {
+                terms = new HashMap<>(current.terms);
+                for (Map.Entry<String, PostingsBuilder> lemma : appended.entrySet()) {
+                    terms.put(lemma.getKey(), lemma.getValue().appendTo(terms.get(lemma.getKey())));
+                }
+            }
+            Snapshot next = new Snapshot(terms, pageIds, size, deleted, deletedCount);
+            if (deletedCount >= COMPACT_MIN_DELETED && deletedCount * 4 > size) {
+                next = next.compact(ordinals);
+            }
+            snapshot = next;
+        }
+
+        private int delete(long pageId, BitSet deleted) {
+            int ordinal = ordinals.remove(pageId);
+            if (ordinal == LongIntMap.ABSENT) {
+                return 0;
+            }
+            deleted.set(ordinal);
+            return 1;
+        }
+    }
+
+    private static class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(Map.of(), new long[0], 0, new BitSet(), 0);
+
+        final Map<String, Postings> terms;
+        /**
+         * Id страницы по её номеру; массив общий для снимков одного сайта, каждый читает только первые {@link #size}.
+         */
+        final long[] pageIds;
+        final int size;
+        final BitSet deleted;
+        final int deletedCount;
+
+        Snapshot(Map<String, Postings> terms, long[] pageIds, int size, BitSet deleted, int deletedCount) {
+            this.terms = terms;
+            this.pageIds = pageIds;
+            this.size = size;
+            this.deleted = deleted;
+            this.deletedCount = deletedCount;
+        }
+
+        /**
+         * Объединяет списки лемм слиянием по номерам страниц и оставляет в {@code top} лучшие {@code max}.
+         */
+        void collect(Collection<String> lemmas, int max, PriorityQueue<PageHit> top) {
+            Postings[] lists = new Postings[lemmas.size()];
+            int n = 0;
+            for (String lemma : lemmas) {
+                Postings postings = terms.get(lemma);
+                if (postings == null) {
+                    return;
+                }
+                lists[n++] = postings;
+            }
+            int[] cursors = new int[n];
+            while (true) {
+                int page = Integer.MAX_VALUE;
+                for (int i = 0; i < n; i++) {
+                    if (cursors[i] < lists[i].pages.length) {
+                        page = Math.min(page, lists[i].pages[cursors[i]]);
+                    }
+                }
+                if (page == Integer.MAX_VALUE) {
+                    return;
+                }
+                float rank = 0;
+                for (int i = 0; i < n; i++) {
+                    if (cursors[i] < lists[i].pages.length && lists[i].pages[cursors[i]] == page) {
+                        rank += lists[i].ranks[cursors[i]++];
+                    }
+                }
+                if (deleted.get(page)) {
+                    continue;
+                }
+                long pageId = pageIds[page];
+                if (top.size() < max || isBetter(rank, pageId, top.peek())) {
+                    top.add(new PageHit(pageId, rank));
+                    if (top.size() > max) {
+                        top.poll();
+                    }
+                }
+            }
+        }
+
+        private static boolean isBetter(float rank, long pageId, PageHit worst) {
+            return rank > worst.getRelevance() || rank == worst.getRelevance() && pageId < worst.getPageId();
+        }
+
+        /**
+         * Перенумеровывает живые страницы подряд и выбрасывает удалённые из всех списков.
+         */
+        Snapshot compact(LongIntMap ordinals) {
+            int[] renumbered = new int[size];
+            long[] livePages = new long[Math.max(16, size - deletedCount)];
+            int live = 0;
+            for (int ordinal = 0; ordinal < size; ordinal++) {
+                if (deleted.get(ordinal)) {
+                    renumbered[ordinal] = -1;
+                } else {
+                    renumbered[ordinal] = live;
+                    livePages[live++] = pageIds[ordinal];
+                }
+            }
+            ordinals.renumber(renumbered);
+            Map<String, Postings> liveTerms = new HashMap<>(terms.size() * 4 / 3 + 1);
+            for (Map.Entry<String, Postings> lemma : terms.entrySet()) {
+                Postings postings = lemma.getValue().renumber(renumbered);
+                if (postings.pages.length > 0) {
+                    liveTerms.put(lemma.getKey(), postings);
+                }
+            }
+            return new Snapshot(liveTerms, livePages, live, new BitSet(), 0);
+        }
+    }
+
+    private static class Postings {
+        final int[] pages;
+        final float[] ranks;
+
+        Postings(int[] pages, float[] ranks) {
+            this.pages = pages;
+            this.ranks = ranks;
+        }
+
+        Postings renumber(int[] renumbered) {
+            int[] livePages = new int[pages.length];
+            float[] liveRanks = new float[pages.length];
+            int n = 0;
+            for (int i = 0; i < pages.length; i++) {
+                int page = renumbered[pages[i]];
+                if (page >= 0) {
+                    livePages[n] = page;
+                    liveRanks[n++] = ranks[i];
+                }
+            }
+            return new Postings(Arrays.copyOf(livePages, n), Arrays.copyOf(liveRanks, n));
+        }
+    }
+
+    /**
+     * Растущий список пар номер страницы — ранг, упакованных в long: номер в старших 32 битах,
+     * поэтому сортировка массива упорядочивает пары по номеру страницы.
+     */
+    private static class PostingsBuilder {
+        private long[] packed = new long[4];
+        private int size;
+
+        void add(int page, float rank) {
+            if (size == packed.length) {
+                packed = Arrays.copyOf(packed, size * 2);
+            }
+            packed[size++] = (long) page << 32 | (Float.floatToRawIntBits(rank) & 0xFFFFFFFFL);
+        }
+
+        Postings buildSorted() {
+            Arrays.sort(packed, 0, size);
+            return appendTo(null);
+        }
+
+        Postings appendTo(Postings existing) {
+            int from = existing == null ? 0 : existing.pages.length;
+            int[] pages = existing == null ? new int[size] : Arrays.copyOf(existing.pages, from + size);
+            float[] ranks = existing == null ? new float[size] : Arrays.copyOf(existing.ranks, from + size);
+            for (int i = 0; i < size; i++) {
+                pages[from + i] = (int) (packed[i] >>> 32);
+                ranks[from + i] = Float.intBitsToFloat((int) packed[i]);
+            }
+            return new Postings(pages, ranks);
+        }
+    }
+}
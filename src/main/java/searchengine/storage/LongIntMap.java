@@ -0,0 +1,105 @@
+package searchengine.storage;
+
+/**
+ * Отображение id страницы в её номер без упаковки ключей и значений в {@code Long} и {@code Integer}:
+ * открытая адресация с линейным пробированием, удаление сдвигает хвост цепочки назад и не оставляет
+ * пометок. Ключ 0 означает пустую ячейку, поэтому id должны быть положительными. Не потокобезопасно.
+ */
+class LongIntMap {
+    static final int ABSENT = -1;
+
+    private long[] keys = new long[16];
+    private int[] values = new int[16];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return значение или {@link #ABSENT}
+     */
+    int get(long key) {
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return ABSENT;
+    }
+
+    void put(long key, int value) {
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    /**
+     * @return прежнее значение или {@link #ABSENT}, если ключа не было
+     */
+    int remove(long key) {
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (keys[slot] != key) {
+            if (keys[slot] == 0) {
+                return ABSENT;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int value = values[slot];
+        int gap = slot;
+        for (int next = (gap + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+            // элемент можно перенести в дыру, если она лежит между его исходной ячейкой и текущей
+            if (((next - slot(keys[next], mask)) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        keys[gap] = 0;
+        size--;
+        return value;
+    }
+
+    /**
+     * Заменяет каждое значение {@code v} на {@code renumbered[v]}.
+     */
+    void renumber(int[] renumbered) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                values[slot] = renumbered[values[slot]];
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        size = 0;
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != 0) {
+                put(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
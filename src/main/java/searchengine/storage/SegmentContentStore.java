@@ -0,0 +1,280 @@
+package searchengine.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Хранилище содержимого страниц в файлах-сегментах, отображённых в память. Записи только дописываются
+ * в конец текущего сегмента; заполненный сегмент больше не меняется. Запись — заголовок из длины сжатых
+ * данных и длины исходного текста, затем данные, сжатые Deflate. Смещение записи содержит номер сегмента
+ * в старших битах, поэтому странице достаточно смещения и длины. Чтение разжимает данные прямо
+ * из отображения сегмента, без промежуточного копирования.
+ *
+ * Закрепление ({@link #pin()}) запоминает текущий сегмент: пока оно открыто, этот и следующие сегменты
+ * не уплотняются, потому что в них могут лежать записи страниц, ещё не зафиксированных в базе.
+ */
+@Slf4j
+@Component
+public class SegmentContentStore implements ContentStore {
+    private static final int SEGMENT_SHIFT = 40;
+    private static final int HEADER_SIZE = 8;
+    private static final String SUFFIX = ".segment";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final double compactionThreshold;
+    private final ConcurrentNavigableMap<Integer, MappedByteBuffer> segments = new ConcurrentSkipListMap<>();
+    /**
+     * Число открытых закреплений по сегменту, с которого они начались.
+     */
+    private final TreeMap<Integer, Integer> pinned = new TreeMap<>();
+    private int activeSegment;
+    private int position;
+
+    public SegmentContentStore(SitesList sitesList) {
+        this.directory = Path.of(sitesList.getContentStoreDir());
+        this.segmentSize = sitesList.getContentSegmentSize();
+        this.compactionThreshold = sitesList.getCompactionThreshold();
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(SUFFIX)) {
+                    int segment = Integer.parseInt(name.substring(0, name.length() - SUFFIX.length()));
+                    segments.put(segment, map(segment));
+                    activeSegment = Math.max(activeSegment, segment);
+                }
+            }
+        }
+        if (segments.isEmpty()) {
+            startSegment(1);
+        } else {
+            position = endOf(segments.get(activeSegment));
+        }
+        log.info("Content store - " + directory.toAbsolutePath() + ": " + segments.size() + " segments");
+    }
+
+    @Override
+    public ContentRef write(String content) {
+        if (content == null || content.isEmpty()) {
+            return null;
+        }
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = compress(raw);
+        return append(compressed, raw.length);
+    }
+
+    @Override
+    public String read(Long offset, Integer length) {
+        if (offset == null || length == null) {
+            return "";
+        }
+        MappedByteBuffer segment = segments.get(segmentOf(offset));
+        if (segment == null) {
+            log.debug("Content segment is gone - " + segmentOf(offset));
+            return "";
+        }
+        int recordStart = positionOf(offset);
+        int rawLength = segment.getInt(recordStart + 4);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(segment.slice(recordStart + HEADER_SIZE, length));
+            byte[] raw = new byte[rawLength];
+            int read = 0;
+            while (read < rawLength && !inflater.finished()) {
+                read += inflater.inflate(raw, read, rawLength - read);
+            }
+            return new String(raw, 0, read, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            log.error("Broken content record - " + offset, e);
+            return "";
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Override
+    public synchronized Pin pin() {
+        int segment = activeSegment;
+        pinned.merge(segment, 1, Integer::sum);
+        return new Pin() {
+            private boolean closed;
+
+            @Override
+            public void sync() {
+                force(segment);
+            }
+
+            @Override
+            public void close() {
+                if (!closed) {
+                    closed = true;
+                    unpin(segment);
+                }
+            }
+        };
+    }
+
+    private synchronized void unpin(int segment) {
+        pinned.computeIfPresent(segment, (s, count) -> count == 1 ? null : count - 1);
+    }
+
+    private void force(int fromSegment) {
+        for (MappedByteBuffer buffer : segments.tailMap(fromSegment).values()) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Переносит живые записи из заполненных сегментов, где мёртвых данных больше порога
+     * {@code compaction-threshold}, в текущий сегмент и удаляет старые файлы. Текущий сегмент и закреплённые
+     * не уплотняются. Перенесённые записи сбрасываются на диск до того, как на них переводятся страницы.
+     */
+    @Override
+    public void compact(LiveContent liveContent) {
+        for (int segment : sealedSegments()) {
+            MappedByteBuffer buffer = segments.get(segment);
+            long from = (long) segment << SEGMENT_SHIFT;
+            long to = (long) (segment + 1) << SEGMENT_SHIFT;
+            List<ContentRef> live = liveContent.find(from, to);
+            long liveBytes = 0;
+            for (ContentRef ref : live) {
+                liveBytes += HEADER_SIZE + ref.getLength();
+            }
+            long usedBytes = endOf(buffer);
+            if (usedBytes == 0 || liveBytes > usedBytes * (1 - compactionThreshold)) {
+                continue;
+            }
+            int target = activeSegment();
+            List<ContentRef> moved = new ArrayList<>(live.size());
+            for (ContentRef ref : live) {
+                int recordStart = positionOf(ref.getOffset());
+                byte[] compressed = new byte[ref.getLength()];
+                buffer.get(recordStart + HEADER_SIZE, compressed);
+                moved.add(append(compressed, buffer.getInt(recordStart + 4)));
+            }
+            force(target);
+            for (int i = 0; i < live.size(); i++) {
+                liveContent.relocate(live.get(i), moved.get(i));
+            }
+            segments.remove(segment);
+            try {
+                Files.deleteIfExists(fileOf(segment));
+            } catch (IOException e) {
+                log.error("Can't delete content segment - " + segment, e);
+            }
+            log.info("Content segment compacted - " + segment + ": " + live.size() + " live records, "
+                    + (usedBytes - liveBytes) + " bytes freed");
+        }
+    }
+
+    private synchronized List<Integer> sealedSegments() {
+        int limit = pinned.isEmpty() ? activeSegment : Math.min(activeSegment, pinned.firstKey());
+        return segments.keySet().stream().filter(segment -> segment < limit).toList();
+    }
+
+    private synchronized int activeSegment() {
+        return activeSegment;
+    }
+
+    private synchronized ContentRef append(byte[] compressed, int rawLength) {
+        int recordSize = HEADER_SIZE + compressed.length;
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("Content record is larger than a segment: " + recordSize);
+        }
+        if (position + recordSize > segmentSize) {
+            startSegment(activeSegment + 1);
+        }
+        MappedByteBuffer buffer = segments.get(activeSegment);
+        buffer.put(position + HEADER_SIZE, compressed);
+        buffer.putInt(position + 4, rawLength);
+        buffer.putInt(position, compressed.length);
+        ContentRef ref = new ContentRef(((long) activeSegment << SEGMENT_SHIFT) | position, compressed.length);
+        position += recordSize;
+        return ref;
+    }
+
+    private void startSegment(int segment) {
+        segments.put(segment, map(segment));
+        activeSegment = segment;
+        position = 0;
+    }
+
+    private MappedByteBuffer map(int segment) {
+        try (FileChannel channel = FileChannel.open(fileOf(segment), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open content segment " + segment, e);
+        }
+    }
+
+    /**
+     * Конец записанных данных сегмента: записи идут подряд, а незаписанная часть файла заполнена нулями.
+     */
+    private int endOf(ByteBuffer segment) {
+        int end = 0;
+        while (end + HEADER_SIZE <= segmentSize) {
+            int length = segment.getInt(end);
+            if (length <= 0 || end + HEADER_SIZE + length > segmentSize) {
+                break;
+            }
+            end += HEADER_SIZE + length;
+        }
+        return end;
+    }
+
+    private Path fileOf(int segment) {
+        return directory.resolve(String.format("%06d", segment) + SUFFIX);
+    }
+
+    private static int segmentOf(long offset) {
+        return (int) (offset >>> SEGMENT_SHIFT);
+    }
+
+    private static int positionOf(long offset) {
+        return (int) (offset & ((1L << SEGMENT_SHIFT) - 1));
+    }
+
+    private static byte[] compress(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
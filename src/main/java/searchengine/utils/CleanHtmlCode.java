@@ -1,17 +1,10 @@
 package searchengine.utils;
 
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Document;
 
 public class CleanHtmlCode {
 
-    public static String clear(String content, String selector) {
-        StringBuilder html = new StringBuilder();
-        var doc = Jsoup.parse(content);
-        var elements = doc.select(selector);
-        for (Element el : elements) {
-            html.append(el.html());
-        }
-        return Jsoup.parse(html.toString()).text();
+    public static String clear(Document doc, String selector) {
+        return doc.select(selector).text();
     }
 }
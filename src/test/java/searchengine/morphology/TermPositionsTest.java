@@ -0,0 +1,72 @@
+package searchengine.morphology;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TermPositionsTest {
+
+    @Test
+    void decodesWhatWasEncoded() {
+        TermPositions positions = new TermPositions();
+        positions.add("кот", 0, 0);
+        positions.add("кот", 3, 17);
+        positions.add("кот", 200, 1500);
+        positions.add("кот", 70000, 400000);
+
+        byte[] encoded = positions.encode("кот");
+
+        assertArrayEquals(new int[]{0, 3, 200, 70000}, TermPositions.decodeTokens(encoded));
+        assertArrayEquals(new int[]{0, 17, 1500, 400000}, TermPositions.decodeOffsets(encoded));
+    }
+
+    @Test
+    void storesSmallGapsInTwoBytesPerEntry() {
+        TermPositions positions = new TermPositions();
+        for (int i = 0; i < 10; i++) {
+            positions.add("кот", i * 5, i * 40);
+        }
+
+        assertEquals(20, positions.encode("кот").length);
+    }
+
+    @Test
+    void keepsTermsApart() {
+        TermPositions positions = new TermPositions();
+        positions.add("кот", 1, 5);
+        positions.add("пёс", 2, 9);
+
+        assertArrayEquals(new int[]{1}, TermPositions.decodeTokens(positions.encode("кот")));
+        assertArrayEquals(new int[]{9}, TermPositions.decodeOffsets(positions.encode("пёс")));
+    }
+
+    @Test
+    void unknownTermHasNoPositions() {
+        TermPositions positions = new TermPositions();
+
+        assertNull(positions.encode("кот"));
+        assertArrayEquals(new int[0], TermPositions.decodeTokens(null));
+        assertArrayEquals(new int[0], TermPositions.decodeOffsets(new byte[0]));
+    }
+
+    @Test
+    void countsWordsAcrossTitleAndBody() {
+        Morphology morphology = word -> List.of(word);
+        TermPositions positions = new TermPositions();
+        String title = "Кот";
+        String body = "кот и пёс";
+
+        morphology.countLemmas(title, positions, 0);
+        morphology.countLemmas(body, positions, TermPositions.bodyOffset(title));
+
+        String text = TermPositions.pageText(title, body);
+        int[] offsets = TermPositions.decodeOffsets(positions.encode("кот"));
+        assertArrayEquals(new int[]{0, 1}, TermPositions.decodeTokens(positions.encode("кот")));
+        assertEquals("кот", text.substring(offsets[1], offsets[1] + 3));
+        assertArrayEquals(new int[]{3}, TermPositions.decodeTokens(positions.encode("пёс")));
+    }
+}
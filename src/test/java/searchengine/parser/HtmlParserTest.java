@@ -0,0 +1,17 @@
+package searchengine.parser;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HtmlParserTest {
+
+    @Test
+    void takesExtensionFromLastPathSegment() {
+        assertEquals("pdf", HtmlParser.extensionOf("https://site.ru/docs/price.PDF"));
+        assertEquals("png", HtmlParser.extensionOf("https://site.ru/img/logo.png?v=2"));
+        assertEquals("", HtmlParser.extensionOf("https://site.ru/catalog.pdf-guide/phones"));
+        assertEquals("", HtmlParser.extensionOf("https://site.ru/search?file=a.jpg"));
+        assertEquals("", HtmlParser.extensionOf("https://www.site.ru/"));
+    }
+}
@@ -0,0 +1,47 @@
+package searchengine.parser;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class NearDuplicateIndexTest {
+    private static final long FINGERPRINT = 0x0123_4567_89AB_CDEFL;
+
+    @Test
+    void firstPageBecomesCanonical() {
+        NearDuplicateIndex index = new NearDuplicateIndex();
+
+        assertNull(index.findOrAdd("https://site.ru/a", FINGERPRINT));
+        assertEquals("https://site.ru/a", index.findOrAdd("https://site.ru/a?print=1", FINGERPRINT));
+    }
+
+    @Test
+    void findsPagesWithinThreeBitsInAnyBand() {
+        NearDuplicateIndex index = new NearDuplicateIndex();
+        index.add("https://site.ru/a", FINGERPRINT);
+
+        long threeBandsChanged = FINGERPRINT ^ (1L << 3) ^ (1L << 20) ^ (1L << 40);
+        assertEquals("https://site.ru/a", index.findOrAdd("https://site.ru/b", threeBandsChanged));
+    }
+
+    @Test
+    void keepsPagesFourBitsApart() {
+        NearDuplicateIndex index = new NearDuplicateIndex();
+        index.add("https://site.ru/a", FINGERPRINT);
+
+        long fourBitsChanged = FINGERPRINT ^ 0b1111L;
+        assertNull(index.findOrAdd("https://site.ru/b", fourBitsChanged));
+        assertEquals("https://site.ru/b", index.findOrAdd("https://site.ru/c", fourBitsChanged));
+    }
+
+    @Test
+    void pageIsNotDuplicateOfItselfAndEmptyFingerprintIsSkipped() {
+        NearDuplicateIndex index = new NearDuplicateIndex();
+        index.add("https://site.ru/a", FINGERPRINT);
+
+        assertNull(index.findOrAdd("https://site.ru/a", FINGERPRINT));
+        assertNull(index.findOrAdd("https://site.ru/b", 0));
+        assertNull(index.findOrAdd("https://site.ru/c", 0));
+    }
+}
@@ -0,0 +1,54 @@
+package searchengine.parser;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimHashTest {
+
+    @Test
+    void distanceCountsDifferentBits() {
+        assertEquals(0, SimHash.distance(0b1011L, 0b1011L));
+        assertEquals(2, SimHash.distance(0b1011L, 0b0001L));
+        assertEquals(64, SimHash.distance(0L, -1L));
+    }
+
+    @Test
+    void shortTextHasNoFingerprint() {
+        assertEquals(0, SimHash.of(text("слово", SimHash.MIN_WORDS - 1, 0)));
+        assertNotEquals(0, SimHash.of(text("слово", SimHash.MIN_WORDS, 0)));
+    }
+
+    @Test
+    void ignoresCaseAndPunctuation() {
+        String text = text("товар", 200, 0);
+
+        assertEquals(SimHash.of(text), SimHash.of(text.toUpperCase().replace(" ", ", ")));
+    }
+
+    @Test
+    void nearlySameTextsAreClose() {
+        String page = text("товар", 300, 0);
+        String printVersion = page + " версия для печати";
+
+        assertTrue(SimHash.distance(SimHash.of(page), SimHash.of(printVersion)) <= 3);
+    }
+
+    @Test
+    void differentTextsAreFar() {
+        long first = SimHash.of(text("товар", 300, 0));
+        long second = SimHash.of(text("новость", 300, 1000));
+
+        assertTrue(SimHash.distance(first, second) > 10);
+    }
+
+    private static String text(String word, int words, int from) {
+        StringBuilder text = new StringBuilder();
+        for (int i = from; i < from + words; i++) {
+            text.append(word).append(i).append(' ');
+        }
+        return text.toString();
+    }
+}
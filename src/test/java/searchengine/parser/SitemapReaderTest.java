@@ -0,0 +1,34 @@
+package searchengine.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SitemapReaderTest {
+
+    @Test
+    void parsesFullDatetimeWithZone() {
+        assertEquals(Instant.parse("2024-05-01T07:30:00Z"), SitemapReader.parseLastmod("2024-05-01T10:30:00+03:00"));
+        assertEquals(Instant.parse("2024-05-01T10:30:15.500Z"), SitemapReader.parseLastmod("2024-05-01T10:30:15.5Z"));
+    }
+
+    @Test
+    void parsesDatetimeWithoutSeconds() {
+        assertEquals(Instant.parse("2024-05-01T10:30:00Z"), SitemapReader.parseLastmod("2024-05-01T10:30Z"));
+    }
+
+    @Test
+    void parsesDateAsUtcMidnight() {
+        assertEquals(Instant.parse("2024-05-01T00:00:00Z"), SitemapReader.parseLastmod(" 2024-05-01\n"));
+    }
+
+    @Test
+    void ignoresMalformedDates() {
+        assertNull(SitemapReader.parseLastmod("01.05.2024"));
+        assertNull(SitemapReader.parseLastmod("2024-05-01T10:30:00"));
+        assertNull(SitemapReader.parseLastmod(""));
+    }
+}
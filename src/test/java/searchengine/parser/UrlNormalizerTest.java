@@ -0,0 +1,53 @@
+package searchengine.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UrlNormalizerTest {
+    private final UrlNormalizer normalizer = new UrlNormalizer(List.of("utm_*", "sessionid"));
+
+    @Test
+    void lowerCasesSchemeAndHostButNotPath() {
+        assertEquals("https://www.playback.ru/Catalog/Phones",
+                normalizer.normalize("HTTPS://WWW.PlayBack.ru/Catalog/Phones"));
+    }
+
+    @Test
+    void dropsDefaultPortFragmentAndTrailingSlash() {
+        assertEquals("https://site.ru/news", normalizer.normalize("https://site.ru:443/news/#top"));
+        assertEquals("http://site.ru/news", normalizer.normalize("http://site.ru:80/news"));
+        assertEquals("http://site.ru:8080/news", normalizer.normalize("http://site.ru:8080/news/"));
+    }
+
+    @Test
+    void keepsRootPath() {
+        assertEquals("https://site.ru/", normalizer.normalize("https://site.ru"));
+        assertEquals("https://site.ru/", normalizer.normalize("https://site.ru/"));
+    }
+
+    @Test
+    void resolvesDotSegments() {
+        assertEquals("https://site.ru/a/c", normalizer.normalize("https://site.ru/a/./b/../c"));
+    }
+
+    @Test
+    void sortsQueryAndStripsTrackingParams() {
+        assertEquals("https://site.ru/list?b=2&page=3",
+                normalizer.normalize("https://site.ru/list?page=3&utm_source=mail&SessionId=42&b=2&utm_medium=x"));
+        assertEquals("https://site.ru/list", normalizer.normalize("https://site.ru/list?utm_source=mail"));
+    }
+
+    @Test
+    void upperCasesPercentEscapes() {
+        assertEquals("https://site.ru/%D0%BA%D0%BE%D1%82",
+                normalizer.normalize("https://site.ru/%d0%ba%d0%be%d1%82"));
+    }
+
+    @Test
+    void leavesUnparsableUrlWithoutFragment() {
+        assertEquals("https://site.ru/a b", normalizer.normalize("https://site.ru/a b#part"));
+    }
+}
@@ -0,0 +1,48 @@
+package searchengine.parser;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VisitedSetTest {
+
+    @Test
+    void acceptsEachUrlOnce() {
+        VisitedSet visited = new VisitedSet(100);
+
+        assertTrue(visited.add("https://site.ru/a"));
+        assertTrue(visited.add("https://site.ru/b"));
+        assertFalse(visited.add("https://site.ru/a"));
+        assertEquals(2, visited.size());
+    }
+
+    @Test
+    void growsPastExpectedSize() {
+        VisitedSet visited = new VisitedSet(10);
+        for (int i = 0; i < 20000; i++) {
+            assertTrue(visited.add("https://site.ru/page/" + i), "first add of page " + i);
+        }
+        for (int i = 0; i < 20000; i++) {
+            assertFalse(visited.add("https://site.ru/page/" + i), "second add of page " + i);
+        }
+        assertEquals(20000, visited.size());
+    }
+
+    @Test
+    void restoresFromFingerprints() {
+        VisitedSet visited = new VisitedSet(100);
+        visited.add("https://site.ru/a");
+        visited.add("https://site.ru/b");
+
+        VisitedSet restored = new VisitedSet(100);
+        restored.restore(visited.fingerprints());
+        restored.restore(visited.fingerprints());
+
+        assertEquals(2, restored.size());
+        assertFalse(restored.add("https://site.ru/a"));
+        assertFalse(restored.add("https://site.ru/b"));
+        assertTrue(restored.add("https://site.ru/c"));
+    }
+}
@@ -0,0 +1,115 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.SitesList;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndexingSchedulerTest {
+
+    @Test
+    void runsHigherPriorityFirstAndEqualPriorityInOrder() throws InterruptedException {
+        IndexingScheduler scheduler = singleThreadScheduler();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(4);
+        List<String> order = new CopyOnWriteArrayList<>();
+        try {
+            scheduler.submit("https://blocker.ru", 0, () -> await(release));
+            scheduler.submit("https://low-1.ru", 0, record(order, "low-1", done));
+            scheduler.submit("https://high.ru", 10, record(order, "high", done));
+            scheduler.submit("https://low-2.ru", 0, record(order, "low-2", done));
+            scheduler.submit("https://mid.ru", 5, record(order, "mid", done));
+            release.countDown();
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(List.of("high", "mid", "low-1", "low-2"), order);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void acceptsOneJobPerSiteUntilItFinishes() throws InterruptedException {
+        IndexingScheduler scheduler = singleThreadScheduler();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        try {
+            assertTrue(scheduler.submit("https://site.ru", 0, () -> {
+                await(release);
+                done.countDown();
+            }));
+            assertFalse(scheduler.submit("https://site.ru", 10, () -> { }));
+            assertTrue(scheduler.isActive());
+
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            waitUntilIdle(scheduler);
+            assertTrue(scheduler.submit("https://site.ru", 0, () -> { }));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void stopAllInterruptsRunningJobAndDropsQueuedOnes() throws InterruptedException {
+        IndexingScheduler scheduler = singleThreadScheduler();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        List<String> ran = new CopyOnWriteArrayList<>();
+        try {
+            scheduler.submit("https://running.ru", 0, () -> {
+                started.countDown();
+                try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            });
+            scheduler.submit("https://queued.ru", 0, () -> ran.add("queued"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            scheduler.stopAll();
+
+            assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+            waitUntilIdle(scheduler);
+            assertTrue(ran.isEmpty());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private static IndexingScheduler singleThreadScheduler() {
+        SitesList sitesList = new SitesList();
+        sitesList.setIndexingThreads(1);
+        return new IndexingScheduler(sitesList);
+    }
+
+    private static Runnable record(List<String> order, String name, CountDownLatch done) {
+        return () -> {
+            order.add(name);
+            done.countDown();
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntilIdle(IndexingScheduler scheduler) throws InterruptedException {
+        for (int i = 0; i < 500 && scheduler.isActive(); i++) {
+            Thread.sleep(10);
+        }
+        assertFalse(scheduler.isActive());
+    }
+}
@@ -0,0 +1,61 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import searchengine.morphology.Morphology;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PhraseQueryTest {
+    private static final Set<String> STOP_WORDS = Set.of("в", "и");
+    private final Morphology morphology = word -> STOP_WORDS.contains(word) ? List.of() : List.of(word);
+
+    @Test
+    void onlyQuotedQueriesWithTwoWordsArePhrases() {
+        assertNull(PhraseQuery.parse("купить телефон", morphology));
+        assertNull(PhraseQuery.parse("\"телефон\"", morphology));
+        assertNull(PhraseQuery.parse("\"в телефон\"", morphology));
+        assertNotNull(PhraseQuery.parse(" \"купить телефон\" ~3 ", morphology));
+    }
+
+    @Test
+    void exactPhraseNeedsAdjacentWords() {
+        PhraseQuery phrase = PhraseQuery.parse("\"купить телефон\"", morphology);
+
+        assertTrue(phrase.matches(Map.of("купить", new int[]{2, 5}, "телефон", new int[]{6})));
+        assertFalse(phrase.matches(Map.of("купить", new int[]{5}, "телефон", new int[]{7})));
+        assertFalse(phrase.matches(Map.of("купить", new int[]{6}, "телефон", new int[]{5})));
+        assertFalse(phrase.matches(Map.of("купить", new int[]{5})));
+    }
+
+    @Test
+    void slopAllowsWordsToMoveEitherWay() {
+        PhraseQuery phrase = PhraseQuery.parse("\"купить телефон\"~2", morphology);
+
+        assertTrue(phrase.matches(Map.of("купить", new int[]{5}, "телефон", new int[]{8})));
+        assertTrue(phrase.matches(Map.of("купить", new int[]{5}, "телефон", new int[]{4})));
+        assertFalse(phrase.matches(Map.of("купить", new int[]{5}, "телефон", new int[]{9})));
+        assertFalse(phrase.matches(Map.of("купить", new int[]{5}, "телефон", new int[]{2})));
+    }
+
+    @Test
+    void stopWordKeepsItsPlaceInPhrase() {
+        PhraseQuery phrase = PhraseQuery.parse("\"купить в кредит\"", morphology);
+
+        assertTrue(phrase.matches(Map.of("купить", new int[]{5}, "кредит", new int[]{7})));
+        assertFalse(phrase.matches(Map.of("купить", new int[]{5}, "кредит", new int[]{6})));
+    }
+
+    @Test
+    void leadingStopWordIsSkippedAsAnchor() {
+        PhraseQuery phrase = PhraseQuery.parse("\"и купить телефон\"", morphology);
+
+        assertTrue(phrase.matches(Map.of("купить", new int[]{0}, "телефон", new int[]{1})));
+    }
+}
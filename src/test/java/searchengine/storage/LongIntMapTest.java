@@ -0,0 +1,60 @@
+package searchengine.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LongIntMapTest {
+
+    @Test
+    void putsReplacesAndRemoves() {
+        LongIntMap map = new LongIntMap();
+        map.put(7, 0);
+        map.put(42, 1);
+        map.put(7, 2);
+
+        assertEquals(2, map.size());
+        assertEquals(2, map.get(7));
+        assertEquals(1, map.remove(42));
+        assertEquals(LongIntMap.ABSENT, map.get(42));
+        assertEquals(LongIntMap.ABSENT, map.remove(42));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void matchesHashMapUnderRandomChanges() {
+        LongIntMap map = new LongIntMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 200000; i++) {
+            long key = 1 + random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                Integer removed = expected.remove(key);
+                assertEquals(removed == null ? LongIntMap.ABSENT : removed, map.remove(key));
+            } else {
+                expected.put(key, i);
+                map.put(key, i);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (long key = 1; key <= 5000; key++) {
+            assertEquals((int) expected.getOrDefault(key, LongIntMap.ABSENT), map.get(key));
+        }
+    }
+
+    @Test
+    void renumbersValues() {
+        LongIntMap map = new LongIntMap();
+        map.put(10, 0);
+        map.put(20, 2);
+
+        map.renumber(new int[]{1, -1, 0});
+
+        assertEquals(1, map.get(10));
+        assertEquals(0, map.get(20));
+    }
+}